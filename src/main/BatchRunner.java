@@ -0,0 +1,627 @@
+package main;
+
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import simulation.LogFlushPolicy;
+import simulation.ParameterSweep;
+import simulation.ReplicationRunner;
+import simulation.SimulationEvent;
+import simulation.SimulationListener;
+import simulation.Simulator;
+import simulation.Statistics;
+
+/** Runs a single simulation without any graphical interface, for machines without a screen. The parameters are
+* given as <code>key=value</code> arguments and/or in a properties file (<code>config=file</code>); the arguments
+* override the file. The statistics are printed to the standard output as <code>key=value</code> lines.
+* With <code>replications=n</code>, n independent replications run in parallel and the estimates of the results
+* (mean, variance and 95% confidence interval) are printed instead. If a simulation parameter has several values
+* (<code>queues=2,4,8</code> or <code>queues=1..10</code>), every combination of values is simulated, in parallel,
+* and the results are written as CSV rows, with the progress on the standard error.
+* 
+* This class must not use Swing or JFreeChart, so they are never loaded.
+*/
+public final class BatchRunner
+{
+	//exit codes
+	private static final int EXIT_FINISHED = 0;
+	private static final int EXIT_FAILED = 1;
+	private static final int EXIT_USAGE = 2;
+	
+	//the parameters
+	private static final String CONFIG = "config";
+	private static final String QUEUES = "queues";
+	private static final String MAX_QUEUE_SIZE = "maxqueuesize";
+	private static final String CUSTOMERS = "customers";
+	private static final String MIN_ARRIVAL = "minarrival";
+	private static final String MAX_ARRIVAL = "maxarrival";
+	private static final String MIN_SERVICE = "minservice";
+	private static final String MAX_SERVICE = "maxservice";
+	private static final String REORGANIZATION = "reorganization";
+	private static final String VIRTUAL_TIME = "virtualtime";
+	private static final String LOG = "log";
+	private static final String LOG_FLUSH = "logflush";
+	private static final String JOURNAL = "journal";
+	private static final String SEED = "seed";
+	private static final String REPLICATIONS = "replications";
+	private static final String THREADS = "threads";
+	private static final String OUTPUT = "output";
+	
+	private static final String[] KEYS = {CONFIG, QUEUES, MAX_QUEUE_SIZE, CUSTOMERS, MIN_ARRIVAL, MAX_ARRIVAL,
+											MIN_SERVICE, MAX_SERVICE, REORGANIZATION, VIRTUAL_TIME, LOG, LOG_FLUSH,
+											JOURNAL, SEED, REPLICATIONS, THREADS, OUTPUT};
+	
+	//the value of the log parameter which disables the log (the default)
+	private static final String NONE = "none";
+	
+	//the percentiles printed for the waiting times and the service amounts
+	private static final double[] PERCENTILES = {50, 90, 95, 99};
+	
+	//the number of decimals of the printed statistics
+	private static final int DECIMALS = 3;
+	
+	//the minimum time between two progress reports of a sweep (milliseconds)
+	private static final long PROGRESS_INTERVAL = 1000;
+	
+	private BatchRunner ()
+	{
+	}
+	
+	/** The main () thread. See the README for the parameters.
+	* 
+	* @param args the parameters, as <code>key=value</code>.
+	*/
+	public static void main (String[] args)
+	{
+		Properties parameters;
+		Simulator.SimulatorBuilder builder;
+		int replications;
+		
+		try
+		{
+			parameters = readParameters (args);
+			
+			if (isSweep (parameters))
+			{
+				runSweep (parameters);
+				
+				return;
+			}
+			
+			builder = createBuilder (parameters);
+			replications = getInt (parameters, REPLICATIONS, 1);
+			
+			if (replications > 1)
+			{
+				runReplications (builder, replications, parameters);
+				
+				return;
+			}
+		}
+		catch (IllegalArgumentException e)
+		{
+			System.err.println ("error=" + e.getMessage ());
+			printUsage (System.err);
+			System.exit (EXIT_USAGE);
+			
+			return;
+		}
+		catch (IOException e)
+		{
+			System.err.println ("error=config can't be read: " + e.getMessage ());
+			System.exit (EXIT_USAGE);
+			
+			return;
+		}
+		
+		Simulator simulator = builder.build ();
+		
+		//the end of the simulation is delivered on another thread
+		final CountDownLatch ended = new CountDownLatch (1);
+		final SimulationEvent.Kind[] result = new SimulationEvent.Kind[1];
+		
+		simulator.addSimulationListener (new SimulationListener ()
+		{
+			@Override public void eventOccurred (SimulationEvent event)
+			{
+				switch (event.getKind ())
+				{
+					case SIMULATION_FINISHED:
+					case SIMULATION_ERROR:
+					case SIMULATION_STOPPED:
+						result[0] = event.getKind ();
+						ended.countDown ();
+						break;
+					default:
+						break;
+				}
+			}
+		});
+		
+		//the time from the start of the JVM until the simulation starts
+		long start = System.currentTimeMillis ();
+		long startup = start - ManagementFactory.getRuntimeMXBean ().getStartTime ();
+		
+		simulator.simulate ();
+		
+		boolean interrupted = false;
+		
+		while (ended.getCount () > 0)
+		{
+			try
+			{
+				ended.await ();
+			}
+			catch (InterruptedException e)
+			{
+				interrupted = true;
+			}
+		}
+		
+		long run = System.currentTimeMillis () - start;
+		
+		if (interrupted)
+		{
+			Thread.currentThread ().interrupt ();
+		}
+		
+		PrintStream out = System.out;
+		
+		out.println ("result=" + (result[0] == SimulationEvent.Kind.SIMULATION_FINISHED ? "finished" :
+									result[0] == SimulationEvent.Kind.SIMULATION_ERROR ? "error" : "stopped"));
+		out.println ("startup.ms=" + startup);
+		out.println ("run.ms=" + run);
+		out.println ("simulated.seconds=" + simulator.getElapsedTime ());
+		
+		printStatistics (out, simulator.getStatistics (), simulator.getNrOfQueues ());
+		
+		out.flush ();
+		
+		System.exit (result[0] == SimulationEvent.Kind.SIMULATION_FINISHED ? EXIT_FINISHED : EXIT_FAILED);
+	}
+	
+	//runs several replications of the simulation in parallel and prints the estimates of the results
+	private static void runReplications (Simulator.SimulatorBuilder builder, int replications, Properties parameters)
+	{
+		long start = System.currentTimeMillis ();
+		long startup = start - ManagementFactory.getRuntimeMXBean ().getStartTime ();
+		
+		ReplicationRunner runner = new ReplicationRunner (builder, replications);
+		
+		if (parameters.getProperty (THREADS) != null)
+		{
+			runner.setThreads (getInt (parameters, THREADS, 1));
+		}
+		
+		if (parameters.getProperty (SEED) != null)
+		{
+			runner.setSeed (getLong (parameters, SEED));
+		}
+		
+		ReplicationRunner.Result result;
+		
+		try
+		{
+			result = runner.run ();
+		}
+		catch (InterruptedException e)
+		{
+			System.err.println ("error=interrupted");
+			System.exit (EXIT_FAILED);
+			
+			return;
+		}
+		
+		PrintStream out = System.out;
+		
+		out.println ("result=" + (result.getNrOfFailedReplications () == 0 ? "finished" : "error"));
+		out.println ("startup.ms=" + startup);
+		out.println ("run.ms=" + result.getElapsedTime ());
+		out.println ("replications=" + result.getNrOfReplications ());
+		out.println ("replications.failed=" + result.getNrOfFailedReplications ());
+		
+		printEstimate (out, "wait.mean", result.getWaitingTime ());
+		printEstimate (out, "wait.variance", result.getWaitingTimeVariance ());
+		printEstimate (out, "service.mean", result.getServiceAmount ());
+		
+		out.println ("wait.pooled.mean=" + round (result.getPooledWaitingTimeMean ()));
+		out.println ("wait.pooled.variance=" + round (result.getPooledWaitingTimeVariance ()));
+		
+		for (int i = 0; i < result.getNrOfQueues (); i++)
+		{
+			printEstimate (out, "queue." + i + ".emptytime", result.getQueueEmptyTime (i));
+		}
+		
+		out.flush ();
+		
+		System.exit (result.getNrOfFailedReplications () == 0 ? EXIT_FINISHED : EXIT_FAILED);
+	}
+	
+	//tells if one of the parameters has several values
+	private static boolean isSweep (Properties parameters)
+	{
+		for (ParameterSweep.Parameter p : ParameterSweep.Parameter.values ())
+		{
+			String value = parameters.getProperty (p.getColumn ());
+			
+			if (value != null && (value.indexOf (',') >= 0 || value.indexOf ("..") >= 0))
+			{
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	//runs a simulation for each combination of the values of the parameters and writes the results as CSV
+	private static void runSweep (Properties parameters)
+	{
+		//each point of the sweep is a single simulation
+		if (getInt (parameters, REPLICATIONS, 1) != 1)
+		{
+			throw new IllegalArgumentException (REPLICATIONS + " can't be used in a parameter sweep");
+		}
+		
+		//the swept parameters are given to the sweep, all the others to the builder
+		Properties base = new Properties ();
+		base.putAll (parameters);
+		
+		for (ParameterSweep.Parameter p : ParameterSweep.Parameter.values ())
+		{
+			base.remove (p.getColumn ());
+		}
+		
+		ParameterSweep sweep = new ParameterSweep (createBuilder (base));
+		
+		for (ParameterSweep.Parameter p : ParameterSweep.Parameter.values ())
+		{
+			String value = parameters.getProperty (p.getColumn ());
+			
+			if (value != null)
+			{
+				sweep.setValues (p, getInts (p.getColumn (), value));
+			}
+		}
+		
+		if (parameters.getProperty (THREADS) != null)
+		{
+			sweep.setThreads (getInt (parameters, THREADS, 1));
+		}
+		
+		if (parameters.getProperty (SEED) != null)
+		{
+			sweep.setSeed (getLong (parameters, SEED));
+		}
+		
+		final PrintStream err = System.err;
+		
+		sweep.setProgressListener (new ParameterSweep.ProgressListener ()
+		{
+			private long lastreport = 0;
+			
+			@Override public void progressed (int completed, int total, long elapsed, long remaining)
+			{
+				if (completed < total && elapsed - lastreport < PROGRESS_INTERVAL)
+				{
+					return;
+				}
+				
+				lastreport = elapsed;
+				
+				err.println ("progress=" + completed + "/" + total + " elapsed.s=" + elapsed / 1000
+							+ " eta.s=" + (remaining + 999) / 1000);
+			}
+		});
+		
+		String output = parameters.getProperty (OUTPUT);
+		
+		try
+		{
+			Writer out = new BufferedWriter (output == null ? new OutputStreamWriter (System.out) : new FileWriter (output));
+			
+			try
+			{
+				sweep.run (out);
+			}
+			finally
+			{
+				out.close ();
+			}
+		}
+		catch (IOException e)
+		{
+			System.err.println ("error=output can't be written: " + e.getMessage ());
+			System.exit (EXIT_FAILED);
+		}
+		catch (InterruptedException e)
+		{
+			System.err.println ("error=interrupted");
+			System.exit (EXIT_FAILED);
+		}
+		
+		System.exit (EXIT_FINISHED);
+	}
+	
+	//prints the mean of an estimate, its variance and its 95% confidence interval
+	private static void printEstimate (PrintStream out, String key, ReplicationRunner.Estimate estimate)
+	{
+		out.println (key + "=" + round (estimate.getMean ()));
+		out.println (key + ".variance=" + round (estimate.getVariance ()));
+		out.println (key + ".ci95=" + round (estimate.getLower ()) + "," + round (estimate.getUpper ()));
+	}
+	
+	//rounds to the number of decimals of the printed statistics
+	private static String round (double value)
+	{
+		if (Double.isNaN (value))
+		{
+			return "NaN";
+		}
+		
+		return String.format (Locale.US, "%." + DECIMALS + "f", value);
+	}
+	
+	/** Prints the statistics of a simulation as <code>key=value</code> lines.
+	* 
+	* @param out where to print.
+	* 
+	* @param stat the statistics.
+	* 
+	* @param nrqueues the number of queues of the simulation.
+	*/
+	static void printStatistics (PrintStream out, Statistics stat, int nrqueues)
+	{
+		out.println ("customers.processed=" + stat.getNrOfProcessedCustomers ());
+		
+		out.println ("wait.mean=" + stat.getAverageWaitingTimes (DECIMALS));
+		out.println ("wait.variance=" + stat.getWaitingTimesVariance (DECIMALS));
+		out.println ("wait.min=" + stat.getMinimumWaitingTime (DECIMALS));
+		out.println ("wait.max=" + stat.getMaximumWaitingTime (DECIMALS));
+		
+		for (double p : PERCENTILES)
+		{
+			out.println ("wait.p" + (int) p + "=" + round (stat.getWaitingTimePercentile (p)));
+		}
+		
+		out.println ("service.mean=" + stat.getAverageServiceAmounts (DECIMALS));
+		out.println ("service.variance=" + stat.getServiceAmountsVariance (DECIMALS));
+		out.println ("service.min=" + stat.getMinimumServiceAmount (DECIMALS));
+		out.println ("service.max=" + stat.getMaximumServiceAmount (DECIMALS));
+		
+		for (double p : PERCENTILES)
+		{
+			out.println ("service.p" + (int) p + "=" + round (stat.getServiceAmountPercentile (p)));
+		}
+		
+		for (int i = 0; i < nrqueues; i++)
+		{
+			out.println ("queue." + i + ".emptytime=" + stat.getQueueEmptyTime (i, DECIMALS));
+		}
+	}
+	
+	//reads the parameters from the arguments and, if specified, from the config file
+	private static Properties readParameters (String[] args) throws IOException
+	{
+		Properties arguments = new Properties ();
+		
+		for (String arg : args)
+		{
+			if (arg.equals ("-h") || arg.equals ("--help"))
+			{
+				printUsage (System.out);
+				System.exit (EXIT_FINISHED);
+			}
+			
+			//the dashes are optional
+			String pair = arg.startsWith ("--") ? arg.substring (2) : arg;
+			int equals = pair.indexOf ('=');
+			
+			if (equals <= 0)
+			{
+				throw new IllegalArgumentException ("expected key=value, found " + arg);
+			}
+			
+			arguments.setProperty (pair.substring (0, equals).trim (), pair.substring (equals + 1).trim ());
+		}
+		
+		Properties parameters = new Properties ();
+		String config = arguments.getProperty (CONFIG);
+		
+		if (config != null)
+		{
+			InputStream in = new FileInputStream (config);
+			
+			try
+			{
+				parameters.load (in);
+			}
+			finally
+			{
+				in.close ();
+			}
+		}
+		
+		//the arguments override the file
+		parameters.putAll (arguments);
+		
+		for (String key : parameters.stringPropertyNames ())
+		{
+			if (! isKnownKey (key))
+			{
+				throw new IllegalArgumentException ("unknown parameter " + key);
+			}
+		}
+		
+		return parameters;
+	}
+	
+	/** Creates a builder configured with the parameters. Parameters that are not specified keep the default values
+	* of the simulator, except that the simulation runs in virtual time and without a log.
+	* 
+	* @param parameters the parameters.
+	* 
+	* @throws IllegalArgumentException if a parameter is not valid.
+	* 
+	* @return the builder.
+	*/
+	static Simulator.SimulatorBuilder createBuilder (Properties parameters)
+	{
+		Simulator.SimulatorBuilder builder = Simulator.createSimulatorBuilder ();
+		
+		builder.setNrQueues (getInt (parameters, QUEUES, Simulator.DEFAULT_NR_QUEUES));
+		builder.setMaxQueueSize (getInt (parameters, MAX_QUEUE_SIZE, Simulator.DEFAULT_MAX_QUEUE_SIZE));
+		builder.setNrCustomers (getInt (parameters, CUSTOMERS, Simulator.DEFAULT_NR_CUSTOMERS));
+		builder.setArrivalInterval (getInt (parameters, MIN_ARRIVAL, Simulator.DEFAULT_MIN_ARRIVAL),
+									getInt (parameters, MAX_ARRIVAL, Simulator.DEFAULT_MAX_ARRIVAL));
+		builder.setServiceAmount (getInt (parameters, MIN_SERVICE, Simulator.DEFAULT_MIN_SERVICE),
+									getInt (parameters, MAX_SERVICE, Simulator.DEFAULT_MAX_SERVICE));
+		builder.setReorganization (getInt (parameters, REORGANIZATION, Simulator.DEFAULT_REORGANIZATION));
+		
+		builder.setVirtualTime (Boolean.parseBoolean (parameters.getProperty (VIRTUAL_TIME, "true")));
+		
+		String log = parameters.getProperty (LOG, NONE);
+		builder.setLogFile (log.equals (NONE) ? null : log);
+		
+		String flush = parameters.getProperty (LOG_FLUSH);
+		
+		if (flush != null)
+		{
+			try
+			{
+				builder.setLogFlushPolicy (LogFlushPolicy.valueOf (flush.toUpperCase ()));
+			}
+			catch (IllegalArgumentException e)
+			{
+				throw new IllegalArgumentException ("invalid " + LOG_FLUSH + ": " + flush);
+			}
+		}
+		
+		builder.setJournal (parameters.getProperty (JOURNAL));
+		
+		if (parameters.getProperty (SEED) != null)
+		{
+			builder.setSeed (getLong (parameters, SEED));
+		}
+		
+		return builder;
+	}
+	
+	private static int getInt (Properties parameters, String key, int defaultvalue)
+	{
+		String value = parameters.getProperty (key);
+		
+		if (value == null)
+		{
+			return defaultvalue;
+		}
+		
+		try
+		{
+			return Integer.parseInt (value);
+		}
+		catch (NumberFormatException e)
+		{
+			throw new IllegalArgumentException ("invalid " + key + ": " + value);
+		}
+	}
+	
+	//parses a list of values separated by commas. each item is a number or a range, from..to or from..to:step
+	private static int[] getInts (String key, String value)
+	{
+		ArrayList<Integer> values = new ArrayList<Integer> ();
+		
+		try
+		{
+			for (String item : value.split (","))
+			{
+				item = item.trim ();
+				int range = item.indexOf ("..");
+				
+				if (range < 0)
+				{
+					values.add (Integer.parseInt (item));
+					
+					continue;
+				}
+				
+				int colon = item.indexOf (':', range);
+				int from = Integer.parseInt (item.substring (0, range).trim ());
+				int to = Integer.parseInt (item.substring (range + 2, colon < 0 ? item.length () : colon).trim ());
+				int step = colon < 0 ? 1 : Integer.parseInt (item.substring (colon + 1).trim ());
+				
+				if (step < 1 || to < from)
+				{
+					throw new IllegalArgumentException ("invalid " + key + ": " + value);
+				}
+				
+				for (long v = from; v <= to; v += step)
+				{
+					values.add ((int) v);
+				}
+			}
+		}
+		catch (NumberFormatException e)
+		{
+			throw new IllegalArgumentException ("invalid " + key + ": " + value);
+		}
+		
+		int[] result = new int[values.size ()];
+		
+		for (int i = 0; i < result.length; i++)
+		{
+			result[i] = values.get (i);
+		}
+		
+		return result;
+	}
+	
+	private static long getLong (Properties parameters, String key)
+	{
+		String value = parameters.getProperty (key);
+		
+		try
+		{
+			return Long.parseLong (value);
+		}
+		catch (NumberFormatException e)
+		{
+			throw new IllegalArgumentException ("invalid " + key + ": " + value);
+		}
+	}
+	
+	private static boolean isKnownKey (String key)
+	{
+		for (String k : KEYS)
+		{
+			if (k.equals (key))
+			{
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	private static void printUsage (PrintStream out)
+	{
+		out.println ("usage: java -cp QueueManager.jar main.BatchRunner [key=value ...]");
+		out.println ("keys: config (properties file with the same keys), " + QUEUES + ", " + MAX_QUEUE_SIZE + ", "
+					+ CUSTOMERS + ", " + MIN_ARRIVAL + ", " + MAX_ARRIVAL + ", " + MIN_SERVICE + ", " + MAX_SERVICE
+					+ ", " + REORGANIZATION + ", " + VIRTUAL_TIME + " (default true), " + LOG + " (file, default "
+					+ NONE + "), " + LOG_FLUSH + " (none, batch, sync), " + JOURNAL + " (base name), " + SEED + ", "
+					+ REPLICATIONS + " (runs in parallel, default 1), " + THREADS + " (default: all processors), "
+					+ OUTPUT + " (CSV file of a sweep, default standard output)");
+		out.println ("the simulation parameters accept lists (1,2,4) and ranges (1..8 or 2..20:2); each combination of "
+					+ "values is simulated in parallel and written as a CSV row (" + REPLICATIONS + " is not allowed)");
+	}
+}
@@ -0,0 +1,294 @@
+package main;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import javax.swing.AbstractListModel;
+import simulation.MessageParser;
+import simulation.SimulationEvent;
+
+/** The model of the events list. It keeps only the most recent entries, in a ring of primitive arrays, and builds
+* the text of an entry only when the list displays it. The entries can be filtered by category.
+* 
+* The methods of the model must be called on the event dispatch thread. <code>Entries</code> can be filled on
+* any thread, as long as it's not used by two threads at the same time.
+* 
+* The model is raw because <code>AbstractListModel</code> is generic only since Java 7, and the program still
+* builds for Java 6.
+*/
+@SuppressWarnings ("rawtypes")
+final class EventLogModel extends AbstractListModel
+{
+	private static final long serialVersionUID = 1L;
+	
+	//the categories of the entries. they can be combined for filtering
+	static final int SIMULATION = 1;
+	static final int QUEUES = 2;
+	static final int CUSTOMERS = 4;
+	static final int ALL = SIMULATION | QUEUES | CUSTOMERS;
+	
+	//all the entries
+	private final Entries entries;
+	
+	//the sequence numbers of the entries that pass the filter, in a ring of the same capacity
+	private final long[] visible;
+	private long firstvisible;
+	private long nextvisible;
+	
+	private int filter;
+	
+	//used to build the text of the entries
+	private final StringBuilder text;
+	private final SimpleDateFormat timeformat;
+	
+	EventLogModel (int capacity)
+	{
+		this.entries = new Entries (capacity);
+		this.visible = new long[capacity];
+		this.firstvisible = 0;
+		this.nextvisible = 0;
+		this.filter = ALL;
+		this.text = new StringBuilder (128);
+		this.timeformat = new SimpleDateFormat ("[K:mm:ss]");
+	}
+	
+	/** Returns the category of an event.
+	* 
+	* @param kind the kind of the event.
+	* 
+	* @return the category.
+	*/
+	static int category (SimulationEvent.Kind kind)
+	{
+		switch (kind)
+		{
+			case SIMULATION_STARTED:
+			case SIMULATION_FINISHED:
+			case SIMULATION_ERROR:
+			case SIMULATION_STOPPED:
+				return SIMULATION;
+			case CUSTOMER_ARRIVED:
+			case CUSTOMER_LEFT:
+			case CUSTOMERS_MOVED:
+				return CUSTOMERS;
+			default:
+				return QUEUES;
+		}
+	}
+	
+	/** Moves all the entries of <code>source</code> to the end of this model. The oldest entries are discarded
+	* if there is no room for all of them.
+	* 
+	* @param source the new entries. It's empty after this returns.
+	*/
+	void addAll (Entries source)
+	{
+		int oldsize = getSize ();
+		
+		//only the last entries of the source have room
+		long from = Math.max (source.first, source.next - entries.capacity);
+		
+		for (long seq = from; seq < source.next; seq++)
+		{
+			int i = source.slot (seq);
+			long added = entries.add (source.times[i], source.categories[i], source.kinds[i],
+										source.customers[i], source.queues[i], source.texts[i]);
+			
+			if ((source.categories[i] & filter) != 0)
+			{
+				visible[(int) (nextvisible % visible.length)] = added;
+				nextvisible++;
+			}
+		}
+		
+		source.clear ();
+		
+		//the visible entries that were discarded from the model
+		int removed = 0;
+		
+		while (firstvisible < nextvisible &&
+				(visible[(int) (firstvisible % visible.length)] < entries.first || nextvisible - firstvisible > visible.length))
+		{
+			firstvisible++;
+			removed++;
+		}
+		
+		removed = Math.min (removed, oldsize);
+		
+		if (removed > 0)
+		{
+			fireIntervalRemoved (this, 0, removed - 1);
+		}
+		
+		int newsize = getSize ();
+		
+		if (newsize > oldsize - removed)
+		{
+			fireIntervalAdded (this, oldsize - removed, newsize - 1);
+		}
+	}
+	
+	/** Sets which categories of entries are displayed.
+	* 
+	* @param filter a combination of <code>SIMULATION</code>, <code>QUEUES</code> and <code>CUSTOMERS</code>.
+	*/
+	void setFilter (int filter)
+	{
+		int oldsize = getSize ();
+		
+		this.filter = filter;
+		
+		//the entries are filtered again
+		firstvisible = 0;
+		nextvisible = 0;
+		
+		for (long seq = entries.first; seq < entries.next; seq++)
+		{
+			if ((entries.categories[entries.slot (seq)] & filter) != 0)
+			{
+				visible[(int) (nextvisible % visible.length)] = seq;
+				nextvisible++;
+			}
+		}
+		
+		if (oldsize > 0)
+		{
+			fireIntervalRemoved (this, 0, oldsize - 1);
+		}
+		
+		if (getSize () > 0)
+		{
+			fireIntervalAdded (this, 0, getSize () - 1);
+		}
+	}
+	
+	/** Removes all the entries.
+	*/
+	void clear ()
+	{
+		int oldsize = getSize ();
+		
+		entries.clear ();
+		firstvisible = nextvisible;
+		
+		if (oldsize > 0)
+		{
+			fireIntervalRemoved (this, 0, oldsize - 1);
+		}
+	}
+	
+	@Override public int getSize ()
+	{
+		return (int) (nextvisible - firstvisible);
+	}
+	
+	//the text is built only for the entries that are displayed
+	@Override public Object getElementAt (int index)
+	{
+		int i = entries.slot (visible[(int) ((firstvisible + index) % visible.length)]);
+		
+		text.setLength (0);
+		text.append (timeformat.format (new Date (entries.times[i]))).append (' ');
+		
+		if (entries.texts[i] != null)
+		{
+			text.append (entries.texts[i]);
+		}
+		else
+		{
+			MessageParser.format (entries.kinds[i], entries.customers[i], entries.queues[i], text);
+		}
+		
+		return text.toString ();
+	}
+	
+	/** A ring of entries, stored in primitive arrays. When it's full, adding an entry discards the oldest one.
+	* The entries are identified by sequence numbers, which are never reused.
+	*/
+	static final class Entries
+	{
+		private final int capacity;
+		
+		private final long[] times;
+		private final int[] categories;
+		private final SimulationEvent.Kind[] kinds;
+		private final int[] customers;
+		private final int[] queues;
+		private final String[] texts;
+		
+		//the sequence numbers of the oldest entry and of the next one
+		private long first;
+		private long next;
+		
+		Entries (int capacity)
+		{
+			this.capacity = capacity;
+			this.times = new long[capacity];
+			this.categories = new int[capacity];
+			this.kinds = new SimulationEvent.Kind[capacity];
+			this.customers = new int[capacity];
+			this.queues = new int[capacity];
+			this.texts = new String[capacity];
+			this.first = 0;
+			this.next = 0;
+		}
+		
+		/** Adds an event.
+		* 
+		* @param time the time at which the entry is added.
+		* 
+		* @param event the event.
+		*/
+		void add (long time, SimulationEvent event)
+		{
+			add (time, category (event.getKind ()), event.getKind (), event.getCustomer (), event.getQueue (), null);
+		}
+		
+		/** Adds a text that is not an event of the simulator.
+		* 
+		* @param time the time at which the entry is added.
+		* 
+		* @param category the category of the text.
+		* 
+		* @param text the text.
+		*/
+		void add (long time, int category, String text)
+		{
+			add (time, category, null, 0, 0, text);
+		}
+		
+		private long add (long time, int category, SimulationEvent.Kind kind, int customer, int queue, String text)
+		{
+			if (next - first == capacity)
+			{
+				first++;
+			}
+			
+			int i = slot (next);
+			
+			times[i] = time;
+			categories[i] = category;
+			kinds[i] = kind;
+			customers[i] = customer;
+			queues[i] = queue;
+			texts[i] = text;
+			
+			return next++;
+		}
+		
+		void clear ()
+		{
+			//the texts are not needed anymore
+			for (long seq = first; seq < next; seq++)
+			{
+				texts[slot (seq)] = null;
+			}
+			
+			first = next;
+		}
+		
+		private int slot (long seq)
+		{
+			return (int) (seq % capacity);
+		}
+	}
+}
@@ -1,13 +1,9 @@
 package main;
 
+import java.awt.BorderLayout;
 import java.awt.Dimension;
-import java.awt.GridLayout;
 import java.awt.Toolkit;
 import java.awt.event.*;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Observable;
-import java.util.Observer;
 import javax.swing.*;
 import javax.swing.border.TitledBorder;
 import org.jfree.chart.ChartFactory;
@@ -16,12 +12,13 @@ import org.jfree.chart.JFreeChart;
 import org.jfree.chart.plot.PlotOrientation;
 import org.jfree.data.xy.XYSeries;
 import org.jfree.data.xy.XYSeriesCollection;
-import simulation.MessageParser;
+import simulation.SimulationEvent;
+import simulation.SimulationListener;
 import simulation.Simulator;
 
 /** The GUI of the program.
 */
-public final class GUI implements Observer
+public final class GUI implements SimulationListener
 {
 	//the main frame
 	private JFrame mainframe;
@@ -36,37 +33,69 @@ public final class GUI implements Observer
 	
 	//stores instance to this object. part of singleton implementation
 	private static GUI _instance;
-
-	//maximum capacity of the queues.
-	private final int MAX_QUEUE_SIZE = 10;
 	
-	//maximum number of queues
-	private final int MAX_QUEUES = 10;
-
 	//the panels of the GUI
 	private JPanel inputpanel, queuespanel, eventspanel, buttonspanel;
-
+	
 	//textfields for user input
 	private JTextField txtnrqueues, txtnrcust, txtminarr, txtmaxarr, txtminser, txtmaxser, txtreorg;
-
+	
 	//buttons for controling the program
 	private JButton startsim, stopsim, openqueue, closequeue, showgraphbutton;
 	
+	//swing's lists and drop boxes are generic only since java 7 and the program still builds for java 6, so
+	//they are used raw. the warnings are suppressed only here and in the methods that create them
+	
 	//drop box used for selecting which queue explicitly to close or open
+	@SuppressWarnings ("rawtypes")
 	private JComboBox cbox;
-
-	//"events" will be displayed here
-	private JTextArea txta;
-
-	//these labels will help display the queues
-	private JLabel queuelabels[][];
-
+	
+	//"events" will be displayed here. only the last entries are kept
+	@SuppressWarnings ("rawtypes")
+	private JList eventlist;
+	private EventLogModel eventlog;
+	
+	//the checkboxes which filter the events
+	private JCheckBox showsimulation, showqueues, showcustomers;
+	
+	//displays the queues
+	private QueuesCanvas canvas;
+	
 	//the simulation engine
 	private Simulator simulator;
 	
 	private boolean isRunning;
 	
-	private XYSeries[] series;
+	//the size of each queue over time, displayed by the graphs
+	private TimeSeriesRing[] history;
+	
+	//the time at which the simulation started (the time of its first event). only used by the event thread
+	private long starttime;
+	
+	//the maximum number of points kept for all the queues together, and for a single queue
+	private static final int HISTORY_POINTS = 4000000;
+	private static final int MIN_QUEUE_HISTORY_POINTS = 1024;
+	
+	//the maximum number of points displayed by a graph. more points would only slow down the chart
+	private static final int GRAPH_POINTS = 2000;
+	
+	//how often the open graphs are refreshed with the new points (milliseconds)
+	private static final int GRAPH_REFRESH_INTERVAL = 500;
+	
+	//how often the display is refreshed during a simulation (milliseconds). about 30 frames per second
+	private static final int FRAME_INTERVAL = 33;
+	
+	//refreshes the display on the event dispatch thread, at most once per frame
+	private Timer renderer;
+	
+	//set when something changed since the last frame
+	private volatile boolean dirty;
+	
+	//the maximum number of entries in the events area
+	private static final int EVENT_LOG_SIZE = 10000;
+	
+	//the entries waiting to be added to the events area. guarded by itself
+	private final EventLogModel.Entries pendinglog = new EventLogModel.Entries (EVENT_LOG_SIZE);
 	
 	/** Creates a GUI object and returns it. Subsequent call of this method will return the same object.
 	* 
@@ -81,20 +110,33 @@ public final class GUI implements Observer
 		
 		return _instance;
 	}
-
+	
 	// creates the GUI.
 	private GUI ()
 	{
 		isRunning = false;
 		
+		dirty = false;
+		
+		renderer = new Timer (FRAME_INTERVAL, new ActionListener ()
+		{
+			@Override public void actionPerformed (ActionEvent a)
+			{
+				if (dirty)
+				{
+					render ();
+				}
+			}
+		});
+		
 		mainframe = new JFrame ("Queue Manager");
 		
 		//set the size.
 		mainframe.setSize (GUI_WIDTH, GUI_HEIGHT);
-
+		
 		//by resizing, it doesn't look so good. so let's disable it.
 		mainframe.setResizable (false);
-
+		
 		//absolute positioning of the panels will be used.
 		mainframe.setLayout (null);
 		
@@ -114,22 +156,22 @@ public final class GUI implements Observer
 		inputpanel = createInputPanel ();
 		inputpanel.setBounds (10, 440, 370, 240);
 		mainframe.add (inputpanel);
-
+		
 		//create the queues panel and add it to the frame
 		queuespanel = createQueuesPanel ();
 		queuespanel.setBounds (390, 10, 500, 500);
 		mainframe.add (queuespanel);
-
+		
 		//create the events panel and add it to the frame
 		eventspanel = createEventsPanel ();
 		eventspanel.setBounds (10, 10, 370, 425);
 		mainframe.add (eventspanel);
-
+		
 		//create the buttons panel and add it to the frame
 		buttonspanel = createButtonsPanel ();
 		buttonspanel.setBounds (390, 520, 500, 160);
 		mainframe.add (buttonspanel);
-
+		
 		//make all visible... oooh yeah..
 		mainframe.setVisible (true);
 	}
@@ -160,7 +202,7 @@ public final class GUI implements Observer
 	{
 		//the menu-bar
 		JMenuBar mybar = new JMenuBar ();
-
+		
 		//create the menus and add mnemonics to them
 		JMenu filemenu = new JMenu ("File");
 		filemenu.setMnemonic (KeyEvent.VK_F);
@@ -168,12 +210,12 @@ public final class GUI implements Observer
 		commandmenu.setMnemonic (KeyEvent.VK_C);
 		JMenu helpmenu = new JMenu ("Help");
 		helpmenu.setMnemonic (KeyEvent.VK_H);
-
+		
 		//create the menu-items
 		JMenuItem exitaction = new JMenuItem ("Exit");
 		JMenuItem emptyaction = new JMenuItem ("Empty Events Area");
 		JMenuItem aboutaction = new JMenuItem ("About");
-
+		
 		//the Exit menu-item causes the main window to be disposed (and therefore exit the application)
 		exitaction.addActionListener (new ActionListener ()
 		{
@@ -182,13 +224,13 @@ public final class GUI implements Observer
 				mainframe.dispose ();
 			}
 		});
-
+		
 		//the Empty menu-item cleares the results area.
 		emptyaction.addActionListener (new ActionListener ()
 		{
 			@Override public void actionPerformed (ActionEvent a)
 			{
-				txta.setText ("");
+				eventlog.clear ();
 			}
 		});
 		
@@ -201,12 +243,12 @@ public final class GUI implements Observer
 				new AboutDialog (mainframe).display ();
 			}
 		});
-
+		
 		//add menu items to the menu
 		filemenu.add (exitaction);
 		commandmenu.add (emptyaction);
 		helpmenu.add (aboutaction);
-
+		
 		//add the menus to the menu-bar
 		mybar.add (filemenu);
 		mybar.add (commandmenu);
@@ -215,23 +257,23 @@ public final class GUI implements Observer
 		//return the menu-bar
 		return mybar;
 	}
-
+	
 	//creates the panel with the user input fields
 	private JPanel createInputPanel ()
 	{
 		//create the panel
 		JPanel panel = new JPanel ();
-
+		
 		//let's set the layout of the elements to gridlayout. won't look perfect, but at
 		//least we get rid of absolute positioning
 		panel.setLayout (null);
-
+		
 		//create a border (with title) for the panel
 		panel.setBorder (BorderFactory.createTitledBorder (BorderFactory.createEtchedBorder (),
 															"Parameters (Optional)",
 															TitledBorder.CENTER,
 															TitledBorder.TOP));
-
+		
 		//create the labels
 		JLabel labnrqueues = new JLabel ("Number of Queues: ");
 		JLabel labnrcust = new JLabel ("Number of Customers: ");
@@ -248,7 +290,7 @@ public final class GUI implements Observer
 		JLabel defaultminser = new JLabel ("(default: 12)");
 		JLabel defaultmaxser = new JLabel ("(default: 20)");
 		JLabel defaultreorg = new JLabel ("(default: 4)");
-
+		
 		//create the input fields
 		txtnrqueues = new JTextField (2);
 		txtnrcust = new JTextField (4);
@@ -257,7 +299,7 @@ public final class GUI implements Observer
 		txtminser = new JTextField (3);
 		txtmaxser = new JTextField (3);
 		txtreorg = new JTextField (3);
-
+		
 		//add everything to the panel
 		//------------------------------------
 		labnrqueues.setBounds (10, 25, 120, 20);
@@ -299,7 +341,7 @@ public final class GUI implements Observer
 		panel.add (labminser);
 		txtminser.setBounds (170, 145, 60, 25);
 		panel.add (txtminser);
-
+		
 		defaultminser.setBounds (240, 145, 80, 20);
 		panel.add (defaultminser);
 		//------------------------------------
@@ -325,44 +367,46 @@ public final class GUI implements Observer
 		
 		return panel;
 	}
-
+	
 	//creates the panel where the queues will be displayed
 	private JPanel createQueuesPanel ()
 	{
 		//create the panel
 		JPanel panel = new JPanel ();
-
-		//gridlayout for displaying the queue "elements". they will practically be JLabels with icons
-		panel.setLayout (new GridLayout (MAX_QUEUES, MAX_QUEUE_SIZE + 1));
-
+		panel.setLayout (new BorderLayout ());
+		
 		//create a border (with title) for the panel
 		panel.setBorder (BorderFactory.createTitledBorder (BorderFactory.createEtchedBorder (),
-															"Queues",
+															"Queues (Ctrl + Mouse Wheel to Zoom)",
 															TitledBorder.CENTER,
 															TitledBorder.TOP));
-
-		queuelabels = new JLabel[MAX_QUEUES][MAX_QUEUE_SIZE + 1];
-
-		//the queue head is an image, everything else is blank (a.k.a. invisible)
-		for (int i = 0; i < MAX_QUEUES; i++)
+		
+		//the queues are painted by the canvas, which can be scrolled
+		canvas = new QueuesCanvas ();
+		
+		//clicking on a queue selects it in the drop box
+		canvas.addMouseListener (new MouseAdapter ()
 		{
-			for (int j = 0; j < MAX_QUEUE_SIZE + 1; j++)
+			@Override public void mouseClicked (MouseEvent m)
 			{
-				queuelabels[i][j] = (j == MAX_QUEUE_SIZE)
-									?
-									new JLabel (new ImageIcon (getClass ().getResource ("images/disabled.png")))
-									:
-									new JLabel (" ");
-
-				panel.add (queuelabels[i][j]);
+				int queue = canvas.getQueueAt (m.getY ());
+				
+				if (queue >= 0 && queue < cbox.getItemCount ())
+				{
+					cbox.setSelectedIndex (queue);
+				}
 			}
-		}
+		});
+		
+		JScrollPane jsp = new JScrollPane (canvas);
+		jsp.setVerticalScrollBarPolicy (JScrollPane.VERTICAL_SCROLLBAR_ALWAYS);
+		panel.add (jsp, BorderLayout.CENTER);
 		
 		GUIUtilities.applyFont (panel);
 		
 		return panel;
 	}
-
+	
 	//create the panel where the "events" happen
 	private JPanel createEventsPanel ()
 	{
@@ -372,24 +416,54 @@ public final class GUI implements Observer
 															"Simulator Events",
 															TitledBorder.CENTER,
 															TitledBorder.TOP));
-
-		//create the text area
-		txta = new JTextArea ();
-		txta.setEditable (false);
-		txta.setLineWrap (true);
-		txta.setWrapStyleWord (true);
-
+		
+		//the checkboxes which select what is displayed
+		showsimulation = new JCheckBox ("Simulation", true);
+		showqueues = new JCheckBox ("Queues", true);
+		showcustomers = new JCheckBox ("Customers", true);
+		
+		ActionListener filterlistener = new ActionListener ()
+		{
+			@Override public void actionPerformed (ActionEvent a)
+			{
+				eventlog.setFilter ((showsimulation.isSelected () ? EventLogModel.SIMULATION : 0) |
+									(showqueues.isSelected () ? EventLogModel.QUEUES : 0) |
+									(showcustomers.isSelected () ? EventLogModel.CUSTOMERS : 0));
+				
+				scrollEventsToEnd ();
+			}
+		};
+		
+		showsimulation.addActionListener (filterlistener);
+		showqueues.addActionListener (filterlistener);
+		showcustomers.addActionListener (filterlistener);
+		
+		showsimulation.setBounds (10, 20, 100, 25);
+		panel.add (showsimulation);
+		
+		showqueues.setBounds (120, 20, 90, 25);
+		panel.add (showqueues);
+		
+		showcustomers.setBounds (220, 20, 110, 25);
+		panel.add (showcustomers);
+		
+		//the list only builds the rows it displays. the fixed cell size spares it from measuring all of them
+		eventlog = new EventLogModel (EVENT_LOG_SIZE);
+		eventlist = createEventList (eventlog);
+		eventlist.setFixedCellHeight (18);
+		eventlist.setFixedCellWidth (480);
+		
 		//wrap it around a scroll pane.
-		JScrollPane jsp = new JScrollPane (txta);
-
-		jsp.setBounds (10, 20, 350, 395);
+		JScrollPane jsp = new JScrollPane (eventlist);
+		
+		jsp.setBounds (10, 50, 350, 365);
 		panel.add (jsp);
 		
 		GUIUtilities.applyFont (panel);
 		
 		return panel;
 	}
-
+	
 	//creates the panel with the buttons
 	private JPanel createButtonsPanel ()
 	{
@@ -399,34 +473,28 @@ public final class GUI implements Observer
 															"Controls",							//title of the border
 															TitledBorder.CENTER,				//position of the title
 															TitledBorder.TOP));					//position of the title
-
+		
 		//create the buttons
 		startsim = new JButton ("Start Simulation");
 		stopsim = new JButton ("Stop Simulation");
 		showgraphbutton = new JButton ("Show Graph");
-
+		
 		//add the action listeners for the buttons
 		startsim.addActionListener (new StartListener ());
 		stopsim.addActionListener (new StopListener ());
 		showgraphbutton.addActionListener (new ShowGraphListener ());
-
+		
 		//next, add the buttons to the panel
-
+		
 		startsim.setBounds (20, 20, 140, 40);
 		panel.add (startsim);
-
+		
 		stopsim.setBounds (340, 20, 140, 40);
 		panel.add (stopsim);
-
-		//an array of all integers up to MAX_QUEUE_SIZE - 1 is needed for the drop box
-		Integer[] arr = new Integer[MAX_QUEUE_SIZE];
-		for (int i = 0; i < MAX_QUEUE_SIZE; i++)
-		{
-			arr[i] = new Integer (i);
-		}
 		
-		//create the drop box
-		cbox = new JComboBox (arr);
+		//create the drop box. it always contains the queues of the simulation
+		cbox = createQueueBox ();
+		setQueueNumbers (Simulator.DEFAULT_NR_QUEUES);
 		
 		cbox.setBounds (10, 100, 55, 35);
 		panel.add (cbox);
@@ -446,7 +514,7 @@ public final class GUI implements Observer
 		showgraphbutton.setBounds (360, 100, 120, 40);
 		showgraphbutton.setEnabled (false);
 		panel.add (showgraphbutton);
-
+		
 		//at first, some buttons are disabled
 		startsim.setEnabled (true);
 		stopsim.setEnabled (false);
@@ -458,122 +526,151 @@ public final class GUI implements Observer
 		return panel;
 	}
 	
-	/** Receives an update message from the Simulator and refreshes the queues panel.
+	/** Receives an event from the Simulator. The display is not refreshed here, but at most once per frame, on the
+	* event dispatch thread, so the GUI keeps up with the simulator no matter how many events it sends.
 	*
-	* @param obs the Simulator.
-	* 
-	* @param x the message received.
+	* @param event the event.
 	*/
-	public void update (Observable obs, Object x)
+	public void eventOccurred (SimulationEvent event)
 	{
-		//downcast to String
-		String msg = (String) x;
-		
-		//parse the received message
-		String parsedmsg = MessageParser.parse (msg);
+		switch (event.getKind ())
+		{
+			case SIMULATION_FINISHED:
+			case SIMULATION_ERROR:
+			case SIMULATION_STOPPED:
+				//if the simulator stopped (for any reason), enable/disable the relevant buttons
+				SwingUtilities.invokeLater (new Runnable ()
+				{
+					@Override public void run ()
+					{
+						simulationEnded ();
+					}
+				});
+				break;
+			case SIMULATION_STARTED:
+				starttime = event.getTime ();
+				break;
+			case CUSTOMER_ARRIVED:
+			case CUSTOMER_LEFT:
+				drawGraph (event.getQueue (), event.getTime (), event.getQueueSize ());
+				break;
+			case CUSTOMERS_MOVED:
+				drawGraph (event.getQueue (), event.getTime (), event.getQueueSize ());
+				drawGraph (event.getValue (), event.getTime (), event.getTargetQueueSize ());
+				
+				//the reorganization is logged as a whole
+				return;
+			default:
+				break;
+		}
 		
 		//log the event to the events panel
-		logSimulation (parsedmsg);
-
-		//if the simulator stopped (for any reason), enable/disable the relevant buttons
-		if (msg.equals ("S|F") || msg.equals ("S|E") || msg.equals ("S|X"))
+		synchronized (pendinglog)
 		{
-			isRunning = false;
-			
-			startsim.setEnabled (true);
-			stopsim.setEnabled (false);
-			
-			closequeue.setEnabled (false);
-			openqueue.setEnabled (false);
-			
-			if (msg.equals ("S|F"))
-			{
-				showgraphbutton.setEnabled (true);
-			}
+			pendinglog.add (System.currentTimeMillis (), event);
 		}
-		else if (msg.startsWith ("C"))
+		
+		dirty = true;
+	}
+	
+	//called on the event dispatch thread when the simulation is over
+	private void simulationEnded ()
+	{
+		isRunning = false;
+		
+		startsim.setEnabled (true);
+		stopsim.setEnabled (false);
+		
+		closequeue.setEnabled (false);
+		openqueue.setEnabled (false);
+		
+		//the last frame
+		renderer.stop ();
+		render ();
+	}
+	
+	//adds information to the history of the specified queue. the time and the size come from the event,
+	//because the simulator may already be further ahead when the event is delivered
+	private void drawGraph (int queue, long time, int size)
+	{
+		history[queue].add ((int) ((time - starttime) / 1000), size);
+	}
+	
+	//adds a text to the events area. it's displayed with the next frame
+	private void logSimulation (String logmessage)
+	{
+		synchronized (pendinglog)
 		{
-			String[] msgelements = msg.split ("\\|");
-			
-			drawGraph (Integer.parseInt (msgelements[3]));
-			redrawQueues ();
+			pendinglog.add (System.currentTimeMillis (), EventLogModel.QUEUES, logmessage);
 		}
-		else if (msg.equals ("Q|R"))
+		
+		dirty = true;
+	}
+	
+	//refreshes the events area and the queues panel. must be called on the event dispatch thread
+	private void render ()
+	{
+		dirty = false;
+		
+		//the events area follows the new entries, unless the user scrolled up
+		boolean atend = eventlist.getLastVisibleIndex () >= eventlog.getSize () - 1;
+		
+		//all the entries of the frame are added at once
+		synchronized (pendinglog)
 		{
-			drawReorganization ();
-			redrawQueues ();
+			eventlog.addAll (pendinglog);
 		}
+		
+		if (atend)
+		{
+			scrollEventsToEnd ();
+		}
+		
+		redrawQueues ();
 	}
 	
-	//adds information to the XY series, called when customers reorganize
-	private void drawReorganization ()
+	private void scrollEventsToEnd ()
 	{
-		for (int i = 0; i < simulator.getNrOfQueues (); i++)
+		if (eventlog.getSize () > 0)
 		{
-			drawGraph (i);
+			eventlist.ensureIndexIsVisible (eventlog.getSize () - 1);
 		}
 	}
 	
-	//adds information to the XY series for the specified queue
-	private void drawGraph (int queue)
+	//redraws the queus (in the queues panel). only the queues that changed since the last frame are repainted
+	private void redrawQueues ()
 	{
-		series[queue].add (simulator.getElapsedTime (), simulator.getQueueSize (queue));
+		canvas.snapshot (simulator);
 	}
 	
-	//appends event to the events area
-	private void logSimulation (String logmessage)
+	//creates the list of events (raw, see cbox)
+	@SuppressWarnings ({"rawtypes", "unchecked"})
+	private static JList createEventList (EventLogModel model)
 	{
-		String currenttime = new SimpleDateFormat ("[K:mm:ss]").format (Calendar.getInstance ().getTime ());	
-		txta.append (currenttime + " " + logmessage + "\n");
+		return new JList (model);
 	}
-
-	//redraws the queus (in the queues panel) after a customer arrived or left
-	private void redrawQueues ()
+	
+	//creates the empty drop box (raw, see cbox)
+	@SuppressWarnings ("rawtypes")
+	private static JComboBox createQueueBox ()
 	{
-		int i, j;
-
-		//go through every queue
-		for (i = 0; i < simulator.getNrOfQueues (); i++)
-		{
-			if (simulator.isOpenQueue (i))
-			{
-				//if the queue is open, put the "open" icon
-				queuelabels[i][MAX_QUEUE_SIZE].setIcon (new ImageIcon (getClass ().getResource ("images/enabled.png")));
-
-				//next, display all customers... or empty spots if there are no customers in that particular area
-				int qsize = simulator.getQueueSize (i);
-
-				for (j = 0; j < MAX_QUEUE_SIZE; j++)
-				{
-					if (MAX_QUEUE_SIZE - qsize > j)
-					{
-						queuelabels[i][j].setIcon (null);
-						queuelabels[i][j].setText (" ");
-					}
-					else
-					{
-						queuelabels[i][j].setIcon (new ImageIcon (getClass ().getResource ("images/filled-circle.gif")));
-					}
-					
-					queuelabels[i][j].revalidate ();
-				}
-			}
-			else
-			{
-				//for closed queues, put the "closed" icon
-				queuelabels[i][MAX_QUEUE_SIZE].setIcon (new ImageIcon (getClass ().getResource ("images/disabled.png")));
-				queuelabels[i][MAX_QUEUE_SIZE].revalidate ();
-			}
-		}
+		return new JComboBox ();
+	}
+	
+	//fills the drop box with all the integers up to nrqueues - 1 (raw, see cbox)
+	@SuppressWarnings ({"rawtypes", "unchecked"})
+	private void setQueueNumbers (int nrqueues)
+	{
+		Integer[] arr = new Integer[nrqueues];
 		
-		//all the other queues are obviously closed
-		for (i = simulator.getNrOfQueues (); i < MAX_QUEUES; i++)
+		for (int i = 0; i < nrqueues; i++)
 		{
-			queuelabels[i][MAX_QUEUE_SIZE].setIcon (new ImageIcon (getClass ().getResource ("images/disabled.png")));
-			queuelabels[i][MAX_QUEUE_SIZE].revalidate ();
+			arr[i] = Integer.valueOf (i);
 		}
+		
+		cbox.setModel (new DefaultComboBoxModel (arr));
 	}
-
+	
 	//action listener for the start simulation button
 	private class StartListener implements ActionListener
 	{
@@ -586,10 +683,10 @@ public final class GUI implements Observer
 					s5 = txtminser.getText (),
 					s6 = txtmaxser.getText (),
 					s7 = txtreorg.getText ();
-
+			
 			//create the simulator
 			Simulator.SimulatorBuilder builder = Simulator.createSimulatorBuilder ();
-
+			
 			try
 			{
 				int tmp_nr_queues = s1.isEmpty () ? Simulator.DEFAULT_NR_QUEUES : Integer.parseInt (s1);
@@ -599,7 +696,7 @@ public final class GUI implements Observer
 				int tmp_min_service = s5.isEmpty () ? Simulator.DEFAULT_MIN_SERVICE : Integer.parseInt (s5);
 				int tmp_max_service = s6.isEmpty () ? Simulator.DEFAULT_MAX_SERVICE : Integer.parseInt (s6);
 				int tmp_reorganization = s7.isEmpty () ? Simulator.DEFAULT_REORGANIZATION : Integer.parseInt (s7);
-
+				
 				builder.setNrQueues (tmp_nr_queues);
 				builder.setNrCustomers (tmp_nr_customers);
 				builder.setArrivalInterval (tmp_min_arrival, tmp_max_arrival);
@@ -609,42 +706,49 @@ public final class GUI implements Observer
 			catch (NumberFormatException excep)
 			{
 				GUIUtilities.showErrorDialog (mainframe, "Parameter(s) format error !", "Input Error");
-
+				
 				return;
 			}
 			catch (IllegalArgumentException excep2)
 			{
 				GUIUtilities.showErrorDialog (mainframe, "Invalid Parameter(s): " + excep2.getMessage (), "Input Error");
-
+				
 				return;
 			}
 			
 			simulator = builder.build ();
-			simulator.addObserver (_instance);
+			simulator.addSimulationListener (_instance);
 			
-			series = new XYSeries[simulator.getNrOfQueues ()];
+			setQueueNumbers (simulator.getNrOfQueues ());
+			
+			//the memory used by the history doesn't depend on the length of the simulation
+			int historysize = Math.max (MIN_QUEUE_HISTORY_POINTS, HISTORY_POINTS / simulator.getNrOfQueues ());
+			
+			history = new TimeSeriesRing[simulator.getNrOfQueues ()];
 			for (int i = 0; i < simulator.getNrOfQueues (); i++)
 			{
-				series[i] = new XYSeries ("Customers");
-				series[i].add (0, 0);
+				history[i] = new TimeSeriesRing (historysize);
+				history[i].add (0, 0);
 			}
 			
 			//start the simulation
+			renderer.start ();
 			simulator.simulate ();
 			
 			isRunning = true;
-
+			
 			//enable/disable the buttons
 			startsim.setEnabled (false);
 			stopsim.setEnabled (true);
 			closequeue.setEnabled (true);
 			openqueue.setEnabled (true);
-			showgraphbutton.setEnabled (false);
+			//the graphs follow the simulation while it runs
+			showgraphbutton.setEnabled (true);
 			
-			redrawQueues ();
+			render ();
 		}
 	}
-
+	
 	//action listener for the stop simulation button
 	private class StopListener implements ActionListener
 	{
@@ -654,7 +758,7 @@ public final class GUI implements Observer
 			simulator.stopSimulation ();
 			
 			isRunning = false;
-
+			
 			//enable/disable buttons
 			startsim.setEnabled (true);
 			stopsim.setEnabled (false);
@@ -668,7 +772,7 @@ public final class GUI implements Observer
 			if (cbox.getSelectedIndex () < simulator.getNrOfQueues ())
 			{
 				simulator.openQueue (cbox.getSelectedIndex ());
-				redrawQueues ();
+				render ();
 			}
 		}
 	}
@@ -688,7 +792,7 @@ public final class GUI implements Observer
 			
 			if (simulator.getQueueSize (cbox.getSelectedIndex ()) == 0)
 			{
-				redrawQueues ();
+				render ();
 			}
 		}
 	}
@@ -700,12 +804,15 @@ public final class GUI implements Observer
 			int selectedq = cbox.getSelectedIndex ();
 			String charttitle = "Graph for Queue " + selectedq;
 			
+			//the graph is refreshed periodically, while the dialog is open
+			final GraphRefresher refresher = new GraphRefresher (history[selectedq]);
+			
 			//create the chart
 			JFreeChart chart = ChartFactory.createXYLineChart (
 												charttitle,								//chart title
 												"Time",										//label for X axis
 												"Customer Count",							//label for Y axis
-												new XYSeriesCollection (series[selectedq]),	//dataset (the actual graph)
+												new XYSeriesCollection (refresher.series),	//dataset (the actual graph)
 												PlotOrientation.VERTICAL,					//orientation
 												true,										//legend
 												true,										//tooltips
@@ -731,6 +838,15 @@ public final class GUI implements Observer
 			graphdiag.setResizable (false);
 			graphdiag.setDefaultCloseOperation (JDialog.DISPOSE_ON_CLOSE);
 			
+			//the graph is not refreshed anymore once the dialog is closed
+			graphdiag.addWindowListener (new WindowAdapter ()
+			{
+				@Override public void windowClosed (WindowEvent w)
+				{
+					refresher.stop ();
+				}
+			});
+			
 			//add the chart panel to the dialog
 			panel.setBounds (0, 0, DWIDTH, DHEIGHT - 110);
 			graphdiag.add (panel);
@@ -739,7 +855,7 @@ public final class GUI implements Observer
 			JButton diagclose = new JButton ("Close");
 			diagclose.setBounds ((DWIDTH - 70) / 2, DHEIGHT - 90, 70, 40);
 			graphdiag.add (diagclose);
-
+			
 			//when the close button is pressed, the dialog is disposed
 			diagclose.addActionListener (new ActionListener ()
 			{
@@ -748,7 +864,7 @@ public final class GUI implements Observer
 					graphdiag.dispose ();
 				}
 			});
-
+			
 			//everything in this panel must be the same font as everything else
 			GUIUtilities.applyFont (panel);
 			GUIUtilities.applyComponentFont (diagclose);
@@ -759,10 +875,70 @@ public final class GUI implements Observer
 			//calculate coordinates
 			int xlocation = (rez[0] - DWIDTH) / 2;
 			int ylocation = (rez[1] - DHEIGHT) / 2;
-
+			
 			//position the dialog on the middle of the screen and display it
 			graphdiag.setLocation (xlocation, ylocation);
 			graphdiag.setVisible (true);
+			
+			refresher.start ();
+		}
+	}
+	
+	//keeps the series of a graph up to date with the history of its queue. the new points are added in batches,
+	//with a single notification, so the chart is redrawn at most once per refresh interval
+	private static final class GraphRefresher implements ActionListener
+	{
+		private final TimeSeriesRing queuehistory;
+		
+		//the points are already sorted by time
+		private final XYSeries series;
+		
+		//the number of points of the history that were already taken
+		private long taken;
+		
+		private final Timer timer;
+		
+		GraphRefresher (TimeSeriesRing queuehistory)
+		{
+			this.queuehistory = queuehistory;
+			this.series = new XYSeries ("Customers", false, true);
+			this.taken = queuehistory.fill (series, GRAPH_POINTS);
+			this.timer = new Timer (GRAPH_REFRESH_INTERVAL, this);
+		}
+		
+		void start ()
+		{
+			timer.start ();
+		}
+		
+		void stop ()
+		{
+			timer.stop ();
+		}
+		
+		@Override public void actionPerformed (ActionEvent a)
+		{
+			long total = queuehistory.getTotal ();
+			
+			if (total == taken)
+			{
+				return;
+			}
+			
+			series.setNotify (false);
+			
+			//when there are too many points, they are downsampled again
+			if (series.getItemCount () + (total - taken) > 2 * GRAPH_POINTS)
+			{
+				taken = queuehistory.fill (series, GRAPH_POINTS);
+			}
+			else
+			{
+				taken = queuehistory.append (series, taken);
+			}
+			
+			//the chart is notified once, for all the new points
+			series.setNotify (true);
 		}
 	}
 	
@@ -796,7 +972,7 @@ public final class GUI implements Observer
 			diag.setPreferredSize (new Dimension (DWIDTH, DHEIGHT));
 			diag.setResizable (false);
 			diag.setDefaultCloseOperation (JDialog.DISPOSE_ON_CLOSE);
-
+			
 			//create the panel
 			JPanel notifypanel = new JPanel ();
 			notifypanel.add (new JLabel ("Are you sure you want to exit ? The simulation is still running."));
@@ -828,7 +1004,7 @@ public final class GUI implements Observer
 			
 			notifypanel.add (yesbutton);
 			notifypanel.add (nobutton);
-
+			
 			//set the panel as the content of the dialog
 			diag.setContentPane (notifypanel);
 			diag.pack ();
@@ -839,7 +1015,7 @@ public final class GUI implements Observer
 			//calculate coordinates
 			int xlocation = (rez[0] - DWIDTH) / 2;
 			int ylocation = (rez[1] - DHEIGHT) / 2;
-
+			
 			//position the dialog on the middle of the screen and display it
 			diag.setLocation (xlocation, ylocation);
 			diag.setVisible (true);
@@ -0,0 +1,278 @@
+package main;
+
+import java.awt.*;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.MouseWheelListener;
+import javax.swing.ImageIcon;
+import javax.swing.JComponent;
+import javax.swing.JScrollPane;
+import javax.swing.JViewport;
+import javax.swing.Scrollable;
+import javax.swing.SwingUtilities;
+import simulation.Simulator;
+
+/** Displays the queues of a simulation, one queue per row, painted directly from a snapshot of their state.
+* Only the visible rows are painted, so any number of queues can be displayed. Ctrl + mouse wheel zooms.
+*/
+final class QueuesCanvas extends JComponent implements Scrollable
+{
+	private static final long serialVersionUID = 1L;
+	
+	//the images are loaded only once
+	private static final Image ENABLED_IMAGE = new ImageIcon (QueuesCanvas.class.getResource ("images/enabled.png")).getImage ();
+	private static final Image DISABLED_IMAGE = new ImageIcon (QueuesCanvas.class.getResource ("images/disabled.png")).getImage ();
+	private static final Image CUSTOMER_IMAGE = new ImageIcon (QueuesCanvas.class.getResource ("images/filled-circle.gif")).getImage ();
+	
+	//the height of the rows (pixels) for each zoom level
+	private static final int[] ROW_HEIGHTS = {2, 3, 4, 6, 8, 12, 16, 24, 32, 44};
+	
+	private static final int DEFAULT_ZOOM = ROW_HEIGHTS.length - 1;
+	
+	//from this height on, the rows are drawn with images and numbers. below it, they are just bars
+	private static final int DETAIL_HEIGHT = 12;
+	
+	//the width of the area with the numbers of the queues
+	private static final int NUMBER_WIDTH = 40;
+	
+	private static final Color BAR_COLOR = new Color (70, 110, 180);
+	private static final Color OPEN_COLOR = new Color (60, 170, 60);
+	private static final Color CLOSED_COLOR = new Color (200, 60, 60);
+	
+	//the snapshot of the queues
+	private int[] sizes;
+	private boolean[] open;
+	private int maxqueuesize;
+	
+	private int zoom;
+	
+	QueuesCanvas ()
+	{
+		this.sizes = new int[0];
+		this.open = new boolean[0];
+		this.maxqueuesize = 1;
+		this.zoom = DEFAULT_ZOOM;
+		
+		setOpaque (true);
+		setBackground (Color.WHITE);
+		
+		addMouseWheelListener (new MouseWheelListener ()
+		{
+			@Override public void mouseWheelMoved (MouseWheelEvent e)
+			{
+				if (e.isControlDown ())
+				{
+					setZoom (zoom - e.getWheelRotation (), e.getY ());
+					
+					return;
+				}
+				
+				//without ctrl, the wheel scrolls
+				Container scrollpane = SwingUtilities.getAncestorOfClass (JScrollPane.class, QueuesCanvas.this);
+				
+				if (scrollpane != null)
+				{
+					scrollpane.dispatchEvent (SwingUtilities.convertMouseEvent (QueuesCanvas.this, e, scrollpane));
+				}
+			}
+		});
+	}
+	
+	/** Takes a snapshot of the queues of the simulator and repaints the rows that changed. Must be called on the
+	* event dispatch thread.
+	* 
+	* @param simulator the simulator. If it's null, no queues are displayed.
+	*/
+	void snapshot (Simulator simulator)
+	{
+		int nrqueues = simulator == null ? 0 : simulator.getNrOfQueues ();
+		
+		if (nrqueues != sizes.length)
+		{
+			sizes = new int[nrqueues];
+			open = new boolean[nrqueues];
+			
+			revalidate ();
+			repaint ();
+		}
+		
+		maxqueuesize = simulator == null ? 1 : simulator.getMaxQueueSize ();
+		
+		//the range of rows that changed
+		int first = -1;
+		int last = -1;
+		
+		for (int i = 0; i < nrqueues; i++)
+		{
+			int size = simulator.getQueueSize (i);
+			boolean isopen = simulator.isOpenQueue (i);
+			
+			if (size != sizes[i] || isopen != open[i])
+			{
+				sizes[i] = size;
+				open[i] = isopen;
+				
+				if (first < 0)
+				{
+					first = i;
+				}
+				
+				last = i;
+			}
+		}
+		
+		if (first >= 0)
+		{
+			int height = rowHeight ();
+			
+			repaint (0, first * height, getWidth (), (last - first + 1) * height);
+		}
+	}
+	
+	/** Returns the queue displayed at the specified height.
+	* 
+	* @param y the vertical coordinate, relative to this component.
+	* 
+	* @return the index of the queue, -1 if there is no queue there.
+	*/
+	int getQueueAt (int y)
+	{
+		int queue = y / rowHeight ();
+		
+		return (y < 0 || queue >= sizes.length) ? -1 : queue;
+	}
+	
+	@Override public Dimension getPreferredSize ()
+	{
+		return new Dimension (NUMBER_WIDTH + 200, sizes.length * rowHeight ());
+	}
+	
+	@Override protected void paintComponent (Graphics g)
+	{
+		Rectangle clip = g.getClipBounds ();
+		
+		g.setColor (getBackground ());
+		g.fillRect (clip.x, clip.y, clip.width, clip.height);
+		
+		int height = rowHeight ();
+		
+		//only the visible rows are painted
+		int first = clip.y / height;
+		int last = Math.min (sizes.length - 1, (clip.y + clip.height) / height);
+		
+		for (int i = first; i <= last; i++)
+		{
+			paintQueue (g, i, i * height, height);
+		}
+	}
+	
+	//paints a queue: its number, the customers and, at the right, its head (open or closed)
+	private void paintQueue (Graphics g, int queue, int y, int height)
+	{
+		boolean detailed = height >= DETAIL_HEIGHT;
+		int width = getWidth ();
+		
+		//the head of the queue
+		int headwidth = Math.max (height, 6);
+		
+		if (detailed)
+		{
+			g.drawImage (open[queue] ? ENABLED_IMAGE : DISABLED_IMAGE, width - headwidth, y, headwidth, height, this);
+			
+			g.setColor (getForeground ());
+			g.drawString (Integer.toString (queue), 4, y + (height + g.getFontMetrics ().getAscent ()) / 2 - 1);
+		}
+		else
+		{
+			g.setColor (open[queue] ? OPEN_COLOR : CLOSED_COLOR);
+			g.fillRect (width - headwidth, y, headwidth, Math.max (1, height - 1));
+		}
+		
+		//the customers are next to the head
+		int start = detailed ? NUMBER_WIDTH : 0;
+		int end = width - headwidth - 2;
+		int size = Math.min (sizes[queue], maxqueuesize);
+		
+		if (size == 0 || end <= start)
+		{
+			return;
+		}
+		
+		if (detailed && maxqueuesize * height <= end - start)
+		{
+			//there is room for every customer
+			for (int k = 1; k <= size; k++)
+			{
+				g.drawImage (CUSTOMER_IMAGE, end - k * height, y, height, height, this);
+			}
+		}
+		else
+		{
+			//the queue is drawn as a bar proportional to its size
+			int length = (int) ((long) (end - start) * size / maxqueuesize);
+			int gap = detailed ? height / 4 : 0;
+			
+			g.setColor (BAR_COLOR);
+			g.fillRect (end - Math.max (1, length), y + gap, Math.max (1, length), Math.max (1, height - 1 - 2 * gap));
+		}
+	}
+	
+	private int rowHeight ()
+	{
+		return ROW_HEIGHTS[zoom];
+	}
+	
+	//changes the zoom, keeping the row at the specified height in the same place on the screen
+	private void setZoom (int newzoom, int anchor)
+	{
+		newzoom = Math.max (0, Math.min (ROW_HEIGHTS.length - 1, newzoom));
+		
+		if (newzoom == zoom)
+		{
+			return;
+		}
+		
+		int oldheight = rowHeight ();
+		zoom = newzoom;
+		int newheight = rowHeight ();
+		
+		if (getParent () instanceof JViewport)
+		{
+			JViewport viewport = (JViewport) getParent ();
+			Point position = viewport.getViewPosition ();
+			
+			int newanchor = (int) ((long) anchor * newheight / oldheight);
+			int maxy = Math.max (0, sizes.length * newheight - viewport.getHeight ());
+			
+			setSize (getWidth (), sizes.length * newheight);
+			viewport.setViewPosition (new Point (position.x, Math.max (0, Math.min (maxy, newanchor - (anchor - position.y)))));
+		}
+		
+		revalidate ();
+		repaint ();
+	}
+	
+	@Override public Dimension getPreferredScrollableViewportSize ()
+	{
+		return getPreferredSize ();
+	}
+	
+	@Override public int getScrollableUnitIncrement (Rectangle visible, int orientation, int direction)
+	{
+		return rowHeight ();
+	}
+	
+	@Override public int getScrollableBlockIncrement (Rectangle visible, int orientation, int direction)
+	{
+		return Math.max (rowHeight (), visible.height - rowHeight ());
+	}
+	
+	@Override public boolean getScrollableTracksViewportWidth ()
+	{
+		return true;
+	}
+	
+	@Override public boolean getScrollableTracksViewportHeight ()
+	{
+		return false;
+	}
+}
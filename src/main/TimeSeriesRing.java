@@ -0,0 +1,221 @@
+package main;
+
+import org.jfree.data.xy.XYSeries;
+
+/** The size of a queue over time, stored in a ring of primitive arrays. When the ring is full, the oldest points
+* are discarded. The arrays grow as the points are added, up to the capacity of the ring.
+* 
+* The points are added by the simulator's thread and read by the event dispatch thread, so the methods are
+* synchronized.
+*/
+final class TimeSeriesRing
+{
+	private static final int INITIAL_SIZE = 256;
+	
+	private final int capacity;
+	
+	private int[] times;
+	private int[] sizes;
+	
+	//the position of the oldest point and the number of points
+	private int start;
+	private int count;
+	
+	//the number of points added since the creation, including the discarded ones
+	private long total;
+	
+	/** Creates an empty time series.
+	* 
+	* @param capacity the maximum number of points kept.
+	*/
+	TimeSeriesRing (int capacity)
+	{
+		this.capacity = capacity;
+		this.times = new int[Math.min (INITIAL_SIZE, capacity)];
+		this.sizes = new int[this.times.length];
+		this.start = 0;
+		this.count = 0;
+		this.total = 0;
+	}
+	
+	/** Adds a point.
+	* 
+	* @param time the time of the point.
+	* 
+	* @param size the size of the queue.
+	*/
+	synchronized void add (int time, int size)
+	{
+		total++;
+		
+		if (count == times.length && times.length < capacity)
+		{
+			grow ();
+		}
+		
+		if (count == times.length)
+		{
+			//full. the oldest point is overwritten
+			times[start] = time;
+			sizes[start] = size;
+			start = (start + 1) % times.length;
+		}
+		else
+		{
+			int i = (start + count) % times.length;
+			
+			times[i] = time;
+			sizes[i] = size;
+			count++;
+		}
+	}
+	
+	/** Returns the number of points added since the creation of the series, including the ones that were
+	* discarded because the ring was full.
+	* 
+	* @return the number of points added.
+	*/
+	synchronized long getTotal ()
+	{
+		return total;
+	}
+	
+	/** Replaces the points of a chart series with at most <code>maxpoints</code> points. If there are more
+	* points, they are downsampled with the Largest-Triangle-Three-Buckets algorithm, which keeps the shape of the
+	* graph (the peaks and the valleys) with far fewer points. The listeners of the series are not notified.
+	* 
+	* @param series the series. It must not sort its points.
+	* 
+	* @param maxpoints the maximum number of points of the series. At least 3.
+	* 
+	* @return the number of points added to this time series so far (see <code>getTotal</code>).
+	*/
+	long fill (XYSeries series, int maxpoints)
+	{
+		int n;
+		int[] t;
+		int[] s;
+		long copied;
+		
+		//copy the points in order, so the simulator doesn't wait for the downsampling
+		synchronized (this)
+		{
+			n = count;
+			t = new int[n];
+			s = new int[n];
+			copied = total;
+			
+			int first = Math.min (n, times.length - start);
+			
+			System.arraycopy (times, start, t, 0, first);
+			System.arraycopy (sizes, start, s, 0, first);
+			System.arraycopy (times, 0, t, first, n - first);
+			System.arraycopy (sizes, 0, s, first, n - first);
+		}
+		
+		boolean notify = series.getNotify ();
+		series.setNotify (false);
+		series.clear ();
+		series.setNotify (notify);
+		
+		if (n <= maxpoints)
+		{
+			for (int i = 0; i < n; i++)
+			{
+				series.add (t[i], s[i], false);
+			}
+			
+			return copied;
+		}
+		
+		//the first and the last points are always kept. the others are split into buckets,
+		//and from each bucket the point that forms the largest triangle with the previous chosen point
+		//and the average of the next bucket is kept
+		double every = (double) (n - 2) / (maxpoints - 2);
+		int previous = 0;
+		
+		series.add (t[0], s[0], false);
+		
+		for (int i = 0; i < maxpoints - 2; i++)
+		{
+			int nextstart = (int) ((i + 1) * every) + 1;
+			int nextend = Math.min ((int) ((i + 2) * every) + 1, n);
+			
+			double avgtime = 0;
+			double avgsize = 0;
+			
+			for (int j = nextstart; j < nextend; j++)
+			{
+				avgtime += t[j];
+				avgsize += s[j];
+			}
+			
+			avgtime /= nextend - nextstart;
+			avgsize /= nextend - nextstart;
+			
+			int bucketstart = (int) (i * every) + 1;
+			int bucketend = nextstart;
+			
+			double maxarea = -1;
+			int chosen = bucketstart;
+			
+			for (int j = bucketstart; j < bucketend; j++)
+			{
+				double area = Math.abs ((t[previous] - avgtime) * (s[j] - s[previous])
+										- (t[previous] - t[j]) * (avgsize - s[previous]));
+				
+				if (area > maxarea)
+				{
+					maxarea = area;
+					chosen = j;
+				}
+			}
+			
+			series.add (t[chosen], s[chosen], false);
+			previous = chosen;
+		}
+		
+		series.add (t[n - 1], s[n - 1], false);
+		
+		return copied;
+	}
+	
+	/** Adds to a chart series the points added to this time series since <code>from</code> (the ones that were
+	* not discarded yet). The listeners of the series are not notified.
+	* 
+	* @param series the series.
+	* 
+	* @param from the number of points added to this time series when the chart series was last updated.
+	* 
+	* @return the number of points added to this time series so far (see <code>getTotal</code>).
+	*/
+	synchronized long append (XYSeries series, long from)
+	{
+		int n = (int) Math.min (total - from, count);
+		
+		for (int k = count - n; k < count; k++)
+		{
+			int i = (start + k) % times.length;
+			
+			series.add (times[i], sizes[i], false);
+		}
+		
+		return total;
+	}
+	
+	//doubles the arrays, without exceeding the capacity
+	private void grow ()
+	{
+		int length = (int) Math.min ((long) times.length * 2, capacity);
+		
+		int[] newtimes = new int[length];
+		int[] newsizes = new int[length];
+		
+		//the points are not wrapped yet, because the ring was never full
+		System.arraycopy (times, 0, newtimes, 0, count);
+		System.arraycopy (sizes, 0, newsizes, 0, count);
+		
+		times = newtimes;
+		sizes = newsizes;
+	}
+}
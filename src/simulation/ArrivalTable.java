@@ -0,0 +1,182 @@
+package simulation;
+
+import java.io.Serializable;
+
+/** Map from <code>Customer</code> IDs to arrival times, used to keep track of the <code>Customer</code>s that
+* arrived but didn't leave yet. It's an open-addressing hash table (linear probing) that stores the keys and the
+* values in primitive arrays, so adding, finding and removing a <code>Customer</code> run in constant time and
+* don't create any objects (except when the table grows).
+* 
+* Only positive IDs are accepted (all <code>Customer</code> IDs are positive).
+* 
+* This class is not thread-safe.
+* 
+* @version 1.0
+*/
+final class ArrivalTable implements Serializable
+{
+	//value returned when an ID is not in the table
+	static final long NOT_FOUND = Long.MIN_VALUE;
+	
+	//id useful for serializable interface
+	private static final long serialVersionUID = 1736462019463715239L;
+	
+	//marks an empty slot in the keys array
+	private static final int EMPTY = 0;
+	
+	private static final int INITIAL_CAPACITY = 64;
+	
+	//the IDs. the length is always a power of 2
+	private int[] keys;
+	
+	//the arrival times
+	private long[] values;
+	
+	//the number of IDs in the table
+	private int size;
+	
+	ArrivalTable ()
+	{
+		keys = new int[INITIAL_CAPACITY];
+		values = new long[INITIAL_CAPACITY];
+		size = 0;
+	}
+	
+	/** Returns the number of IDs in the table.
+	* 
+	* @return the number of IDs in the table.
+	*/
+	int size ()
+	{
+		return size;
+	}
+	
+	/** Adds an ID and its arrival time to the table, unless the ID is already there.
+	* 
+	* @param id the ID.
+	* 
+	* @param arrivaltime the arrival time.
+	* 
+	* @throws IllegalArgumentException if <code>id</code> is not positive.
+	* 
+	* @return true if the ID was added, false if the table already contained it.
+	*/
+	boolean put (int id, long arrivaltime)
+	{
+		if (id <= 0)
+		{
+			throw new IllegalArgumentException ("id must be positive");
+		}
+		
+		int mask = keys.length - 1;
+		int i = slot (id, mask);
+		
+		while (keys[i] != EMPTY)
+		{
+			if (keys[i] == id)
+			{
+				return false;
+			}
+			
+			i = (i + 1) & mask;
+		}
+		
+		keys[i] = id;
+		values[i] = arrivaltime;
+		size++;
+		
+		//keep the load factor at most 1/2
+		if (2 * size > keys.length)
+		{
+			grow ();
+		}
+		
+		return true;
+	}
+	
+	/** Removes an ID from the table.
+	* 
+	* @param id the ID.
+	* 
+	* @return the arrival time associated with the ID, or <code>NOT_FOUND</code> if the table didn't contain it.
+	*/
+	long remove (int id)
+	{
+		int mask = keys.length - 1;
+		int i = slot (id, mask);
+		
+		while (keys[i] != id)
+		{
+			if (keys[i] == EMPTY)
+			{
+				return NOT_FOUND;
+			}
+			
+			i = (i + 1) & mask;
+		}
+		
+		long value = values[i];
+		
+		//shift back the following entries of the cluster, so no lookup stops early at the hole
+		int hole = i;
+		i = (i + 1) & mask;
+		
+		while (keys[i] != EMPTY)
+		{
+			int home = slot (keys[i], mask);
+			
+			//the entry can fill the hole only if its home slot is not between the hole and it (cyclically)
+			if (((i - home) & mask) >= ((i - hole) & mask))
+			{
+				keys[hole] = keys[i];
+				values[hole] = values[i];
+				hole = i;
+			}
+			
+			i = (i + 1) & mask;
+		}
+		
+		keys[hole] = EMPTY;
+		size--;
+		
+		return value;
+	}
+	
+	//the preferred slot of an ID. the multiplication spreads consecutive IDs over the table
+	private static int slot (int id, int mask)
+	{
+		int h = id * 0x9E3779B9;
+		
+		return (h ^ (h >>> 16)) & mask;
+	}
+	
+	//doubles the size of the table
+	private void grow ()
+	{
+		int[] oldkeys = keys;
+		long[] oldvalues = values;
+		
+		keys = new int[2 * oldkeys.length];
+		values = new long[2 * oldvalues.length];
+		
+		int mask = keys.length - 1;
+		
+		for (int j = 0; j < oldkeys.length; j++)
+		{
+			if (oldkeys[j] == EMPTY)
+			{
+				continue;
+			}
+			
+			int i = slot (oldkeys[j], mask);
+			
+			while (keys[i] != EMPTY)
+			{
+				i = (i + 1) & mask;
+			}
+			
+			keys[i] = oldkeys[j];
+			values[i] = oldvalues[j];
+		}
+	}
+}
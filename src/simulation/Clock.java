@@ -0,0 +1,26 @@
+package simulation;
+
+/** Source of the current time used by the simulation engine. The values returned have the same
+* meaning as the ones returned by <code>System.currentTimeMillis ()</code>, but they don't necessarily
+* follow the system clock (for example, when the simulation runs in virtual time).
+* 
+* @version 1.0
+*/
+interface Clock
+{
+	/** A <code>Clock</code> that follows the system clock.
+	*/
+	Clock SYSTEM = new Clock ()
+	{
+		public long currentTimeMillis ()
+		{
+			return System.currentTimeMillis ();
+		}
+	};
+
+	/** Returns the current time of this <code>Clock</code>.
+	* 
+	* @return the current time, expressed in milliseconds.
+	*/
+	long currentTimeMillis ();
+}
@@ -3,13 +3,17 @@ package simulation;
 import java.util.Random;
 
 /** Represents a customer. Every <code>Customer</code> has an ID and a service amount associated with it.
-* The IDs will be assigned to each instance of this class in the order of creation starting from 1.
-* No more than 2^31 - 1 <code>Customer</code>s may be created during the lifetime of the program without calling
-* the <code>resetIDs</code> method. Failure to respect this will trigger a <code>RuntimeException</code>.
+* The <code>Simulator</code> creates its customers itself, with IDs starting from 1 in every simulation and service
+* amounts of its own, so simulations running at the same time don't affect each other.
+* 
+* The public constructor is kept for compatibility. It assigns the IDs in the order of creation starting from 1,
+* from a counter shared by the whole program. No more than 2^31 - 1 <code>Customer</code>s may be created with it
+* without calling the <code>resetIDs</code> method. Failure to respect this will trigger a
+* <code>RuntimeException</code>.
 * 
 * @author Murzea Radu
 * 
-* @version 1.1
+* @version 1.2
 */
 public class Customer implements Comparable<Customer>
 {
@@ -38,7 +42,11 @@ public class Customer implements Comparable<Customer>
 	* 
 	* @throws RuntimeException if more than 2^31 - 1 <code>Customer</code>s have been created
 	* without calling <code>resetIDs</code>.
+	* 
+	* @deprecated the IDs and the random service amounts are shared by the whole program, so they are not safe
+	* when several simulations run at the same time. The <code>Simulator</code> doesn't use this anymore.
 	*/
+	@Deprecated
 	public Customer (int minservice, int maxservice)
 	{
 		if (minservice > maxservice)
@@ -57,10 +65,30 @@ public class Customer implements Comparable<Customer>
 		this.ID = IDCounter;
 	}
 
+	//used by restore
+	private Customer ()
+	{
+	}
+
+	//returns a customer with a known ID and service amount (created by a simulator or read from a journal).
+	//doesn't affect the ID counter
+	static Customer restore (int id, int service)
+	{
+		Customer c = new Customer ();
+		c.ID = id;
+		c.service_needed = service;
+
+		return c;
+	}
+
 	/** Resets the ID counter. New <code>Customer</code>s created after calling this will have IDs 1, 2, 3 etc.
 	* 
 	* @since 1.1
+	* 
+	* @deprecated only affects the deprecated constructor. The <code>Simulator</code> numbers its customers
+	* itself and doesn't call this anymore.
 	*/
+	@Deprecated
 	public static void resetIDs ()
 	{
 		IDCounter = 0;
@@ -118,7 +146,7 @@ public class Customer implements Comparable<Customer>
 		}
 
 		//check if the parameter is really a Customer so it can be safely downcasted
-		if (! getClass ().getName ().equals (o.getClass ().getName ()))
+		if (getClass () != o.getClass ())
 		{
 			return false;
 		}
@@ -0,0 +1,104 @@
+package simulation;
+
+/** Creates the <code>Customer</code>s of a simulation. Every <code>Simulator</code> has its own factory, so the
+* IDs and the service amounts of its customers don't depend on the other simulations running in the same program.
+* The IDs start from 1. The service amounts are picked with a SplitMix64 generator, which is much faster than
+* <code>java.util.Random</code> and, since the factory is not shared, needs no synchronization.
+* 
+* This class is not thread-safe.
+* 
+* @version 1.0
+*/
+final class CustomerFactory
+{
+	//the increment of the SplitMix64 generator
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+	
+	private final int minservice;
+	
+	//the number of possible service amounts
+	private final int range;
+	
+	//the state of the generator
+	private long state;
+	
+	//the ID of the last customer created
+	private int lastid;
+	
+	/** Creates a factory for customers that need a service amount in the specified interval.
+	* 
+	* @param minservice the minimum service needed. Expressed in seconds.
+	* 
+	* @param maxservice the maximum service needed. Expressed in seconds.
+	* 
+	* @param seed the seed of the service amounts. Two factories with the same parameters and the same seed
+	* create the same customers.
+	* 
+	* @throws IllegalArgumentException if <code>minservice</code> is strictly bigger than <code>maxservice</code>.
+	*/
+	CustomerFactory (int minservice, int maxservice, long seed)
+	{
+		if (minservice > maxservice)
+		{
+			throw new IllegalArgumentException ("invalid range");
+		}
+		
+		this.minservice = minservice;
+		this.range = maxservice - minservice + 1;
+		this.state = seed;
+		this.lastid = 0;
+	}
+	
+	/** Creates the next customer, with the next ID and a random service amount (each amount in the interval is
+	* equally likely).
+	* 
+	* @throws IllegalStateException if 2^31 - 1 customers were already created.
+	* 
+	* @return the customer.
+	*/
+	Customer create ()
+	{
+		if (lastid == Integer.MAX_VALUE)
+		{
+			throw new IllegalStateException ("ID too high");
+		}
+		
+		lastid++;
+		
+		return Customer.restore (lastid, minservice + nextInt (range));
+	}
+	
+	//the next value of the generator
+	private long nextLong ()
+	{
+		long z = (state += GOLDEN_GAMMA);
+		
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		
+		return z ^ (z >>> 31);
+	}
+	
+	//a value between 0 (inclusively) and bound (exclusively). the values that would make
+	//the small ones more likely than the others are rejected, like java.util.Random does
+	private int nextInt (int bound)
+	{
+		int bits = (int) (nextLong () >>> 33);
+		
+		//a power of 2 divides the 31 bits evenly
+		if ((bound & -bound) == bound)
+		{
+			return (int) ((bound * (long) bits) >> 31);
+		}
+		
+		int value = bits % bound;
+		
+		while (bits - value + (bound - 1) < 0)
+		{
+			bits = (int) (nextLong () >>> 33);
+			value = bits % bound;
+		}
+		
+		return value;
+	}
+}
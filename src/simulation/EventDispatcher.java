@@ -0,0 +1,267 @@
+package simulation;
+
+import java.util.ArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+/** Delivers the events of a <code>Simulator</code> to its subscribers on a dedicated thread, so the subscribers
+* never run inside the simulator's lock. The events are copied into a ring of preallocated
+* <code>SimulationEvent</code>s, so publishing an event creates no objects.
+* 
+* There must be only one publisher at a time (the simulator publishes while holding its lock). Publishing never
+* waits: when the ring is full, the <code>SubscriberPolicy</code> decides if the event is discarded or kept in an
+* overflow list, which is delivered after the ring. With <code>SubscriberPolicy.BLOCK</code>, the publisher waits
+* for the overflow to be taken by the dispatcher in <code>awaitRoom</code>, after it releases its lock.
+* 
+* @version 1.1
+*/
+final class EventDispatcher
+{
+	//the number of events in the ring. must be a power of 2
+	private static final int CAPACITY = 4096;
+	
+	private static final int MASK = CAPACITY - 1;
+	
+	//how long a publisher waits before checking again if the overflow was taken (nanoseconds)
+	private static final long FULL_WAIT = 100000;
+	
+	//how long the dispatcher sleeps when there is nothing to deliver, if nobody wakes it up (nanoseconds)
+	private static final long IDLE_WAIT = 50000000;
+	
+	private final SimulationEvent[] ring;
+	
+	//the number of events published so far. only written by the publisher
+	private volatile long tail;
+	
+	//the number of events delivered so far. only written by the dispatcher thread
+	private volatile long head;
+	
+	private final SubscriberPolicy policy;
+	
+	//receives the events on the dispatcher thread
+	private final SimulationListener target;
+	
+	private final Thread dispatcher;
+	
+	//set by the dispatcher before going to sleep, so the publisher knows it has to wake it up
+	private volatile boolean sleeping;
+	
+	private volatile boolean closed;
+	
+	//the number of discarded events. only written by the publisher
+	private volatile long dropped;
+	
+	//the events that didn't fit in the ring, in order. they are newer than all the events in the ring
+	private final ArrayList<SimulationEvent> overflow;
+	
+	//tells if the overflow is not empty. set by the publisher, cleared by the dispatcher when it takes the overflow
+	private volatile boolean overflowing;
+	
+	/** Creates the dispatcher and starts its thread.
+	* 
+	* @param policy what to do when the subscribers can't keep up.
+	* 
+	* @param target receives the events, on the dispatcher thread.
+	*/
+	EventDispatcher (SubscriberPolicy policy, SimulationListener target)
+	{
+		this.ring = new SimulationEvent[CAPACITY];
+		
+		for (int i = 0; i < CAPACITY; i++)
+		{
+			this.ring[i] = new SimulationEvent ();
+		}
+		
+		this.tail = 0;
+		this.head = 0;
+		this.policy = policy;
+		this.target = target;
+		this.sleeping = false;
+		this.closed = false;
+		this.dropped = 0;
+		this.overflow = new ArrayList<SimulationEvent> ();
+		this.overflowing = false;
+		
+		this.dispatcher = new Thread (new Runnable ()
+		{
+			public void run ()
+			{
+				deliverEvents ();
+			}
+		}, "simulator-event-dispatcher");
+		
+		//not a daemon: the last events (the end of the simulation) must be delivered
+		this.dispatcher.setDaemon (false);
+		this.dispatcher.start ();
+	}
+	
+	/** Publishes an event. Only its fields are used, so it can be reused after this returns. This method never
+	* waits, so it can be called while holding the simulator's lock.
+	* 
+	* @param event the event.
+	*/
+	void publish (SimulationEvent event)
+	{
+		if (closed)
+		{
+			return;
+		}
+		
+		long t = tail;
+		
+		//only the publisher fills the overflow, so if the flag is clear the overflow is empty
+		if (overflowing || t - head == CAPACITY)
+		{
+			if (policy == SubscriberPolicy.DROP || (policy == SubscriberPolicy.COALESCE && isCustomerEvent (event)))
+			{
+				dropped++;
+				
+				return;
+			}
+			
+			synchronized (overflow)
+			{
+				//the dispatcher may have taken the overflow and made room in the meantime
+				if (overflowing || t - head == CAPACITY)
+				{
+					overflow.add (event.copy ());
+					overflowing = true;
+					
+					wakeUp ();
+					
+					return;
+				}
+			}
+		}
+		
+		ring[(int) t & MASK].copyFrom (event);
+		
+		//makes the event visible to the dispatcher
+		tail = t + 1;
+		
+		wakeUp ();
+	}
+	
+	/** With <code>SubscriberPolicy.BLOCK</code>, waits until the dispatcher has taken the events that didn't fit
+	* in the ring. This is where a slow subscriber slows down the simulation, so it must be called without holding
+	* the simulator's lock. It returns right away on the dispatcher thread, so a subscriber can call the simulator.
+	*/
+	void awaitRoom ()
+	{
+		if (policy != SubscriberPolicy.BLOCK || Thread.currentThread () == dispatcher)
+		{
+			return;
+		}
+		
+		while (overflowing && ! closed && dispatcher.isAlive ())
+		{
+			LockSupport.parkNanos (this, FULL_WAIT);
+		}
+	}
+	
+	/** Returns the number of events that were discarded because the ring was full.
+	* 
+	* @return the number of discarded events.
+	*/
+	long getDroppedEvents ()
+	{
+		return dropped;
+	}
+	
+	/** Stops accepting events. The events already published are still delivered, then the dispatcher thread
+	* ends. This method doesn't wait for that, so it can be called by a subscriber too.
+	*/
+	void close ()
+	{
+		closed = true;
+		LockSupport.unpark (dispatcher);
+	}
+	
+	//the code of the dispatcher thread
+	private void deliverEvents ()
+	{
+		while (true)
+		{
+			long h = head;
+			
+			if (h != tail)
+			{
+				try
+				{
+					target.eventOccurred (ring[(int) h & MASK]);
+				}
+				catch (RuntimeException e)
+				{
+					//a failing subscriber must not stop the delivery of the other events
+				}
+				
+				//frees the slot
+				head = h + 1;
+				
+				continue;
+			}
+			
+			//the overflow is newer than the ring, so it's delivered only when the ring is empty
+			if (overflowing)
+			{
+				ArrayList<SimulationEvent> events;
+				
+				synchronized (overflow)
+				{
+					events = new ArrayList<SimulationEvent> (overflow);
+					overflow.clear ();
+					overflowing = false;
+				}
+				
+				for (SimulationEvent e : events)
+				{
+					try
+					{
+						target.eventOccurred (e);
+					}
+					catch (RuntimeException ex)
+					{
+						//a failing subscriber must not stop the delivery of the other events
+					}
+				}
+				
+				continue;
+			}
+			
+			if (closed && head == tail && ! overflowing)
+			{
+				break;
+			}
+			
+			sleeping = true;
+			
+			//check again, an event may have been published before the publisher saw the flag
+			if (head == tail && ! overflowing && ! closed)
+			{
+				LockSupport.parkNanos (this, IDLE_WAIT);
+			}
+			
+			sleeping = false;
+		}
+	}
+	
+	private void wakeUp ()
+	{
+		if (sleeping)
+		{
+			LockSupport.unpark (dispatcher);
+		}
+	}
+	
+	private static boolean isCustomerEvent (SimulationEvent event)
+	{
+		switch (event.getKind ())
+		{
+			case CUSTOMER_ARRIVED:
+			case CUSTOMER_LEFT:
+			case CUSTOMERS_MOVED:
+				return true;
+			default:
+				return false;
+		}
+	}
+}
@@ -0,0 +1,209 @@
+package simulation;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.UUID;
+
+/** Binary journal of the events of a simulation. Every <code>SimulationEvent</code> is a fixed-width record
+* appended to a memory-mapped file, so recording an event costs about as much as writing to memory. When a file
+* (segment) is full, the journal continues in a new one.
+* 
+* The segments are named <code>&lt;basename&gt;.&lt;n&gt;.qmj</code>, with n = 0, 1, 2 etc. Every segment has
+* <code>SEGMENT_SIZE</code> bytes and starts with a header of <code>HEADER_SIZE</code> bytes: the magic number
+* <code>MAGIC</code>, the format version, the record size and the index of the segment (4 ints), followed by the
+* ID of the journal (long), which is random and the same in all its segments. The header is followed by the
+* records, each <code>RECORD_SIZE</code> bytes long:
+* <ul>
+* <li>the time of the event (long, milliseconds)</li>
+* <li>the type of the event (byte): the ordinal of its <code>SimulationEvent.Kind</code> plus 1, followed by
+* 3 unused bytes</li>
+* <li>the customer field of the event (int)</li>
+* <li>the queue field of the event (int)</li>
+* <li>the additional value of the event (int)</li>
+* </ul>
+* All values are big-endian. The records of a segment end at the first record whose type is 0
+* (the unused part of a segment is filled with zeros).
+* 
+* The segments left by a previous journal with the same name are deleted when the journal is created, and
+* the ID tells the segments of different journals apart anyway.
+* 
+* This class is thread-safe.
+* 
+* @version 1.2
+*/
+final class EventJournal
+{
+	static final int MAGIC = 0x514D4A31;
+	static final int VERSION = 2;
+	static final int HEADER_SIZE = 24;
+	static final int RECORD_SIZE = 24;
+	static final int SEGMENT_SIZE = HEADER_SIZE + RECORD_SIZE * (1 << 21);
+	
+	//the kinds of events, by type - 1
+	private static final SimulationEvent.Kind[] KINDS = SimulationEvent.Kind.values ();
+	
+	private final String basename;
+	
+	//written in the header of every segment
+	private final long id;
+
+	//the current segment
+	private int segment;
+	private RandomAccessFile file;
+	private MappedByteBuffer buffer;
+	
+	private boolean closed;
+	
+	/** Creates the journal and its first segment. The segments of a previous journal with the same name are
+	* deleted.
+	* 
+	* @param basename the name of the journal files, without the segment number and the extension.
+	* 
+	* @throws IOException if the first segment can't be created or an old segment can't be deleted.
+	*/
+	EventJournal (String basename) throws IOException
+	{
+		this.basename = basename;
+		this.id = UUID.randomUUID ().getMostSignificantBits ();
+		this.segment = -1;
+		this.closed = false;
+		
+		deleteSegments ();
+		openSegment ();
+	}
+	
+	/** Returns the name of a segment of a journal.
+	* 
+	* @param basename the name of the journal files, without the segment number and the extension.
+	* 
+	* @param segment the index of the segment.
+	* 
+	* @return the name of the segment file.
+	*/
+	static String segmentName (String basename, int segment)
+	{
+		return basename + "." + segment + ".qmj";
+	}
+	
+	/** Returns the kind of event stored in a record.
+	* 
+	* @param type the type of the record.
+	* 
+	* @return the kind of event, or null if the type is not valid.
+	*/
+	static SimulationEvent.Kind kind (byte type)
+	{
+		return (type < 1 || type > KINDS.length) ? null : KINDS[type - 1];
+	}
+	
+	/** Appends an event to the journal. If an I/O error occurs while starting a new segment, the journal
+	* is closed and all subsequent events are ignored.
+	* 
+	* @param event the event.
+	*/
+	synchronized void append (SimulationEvent event)
+	{
+		if (closed)
+		{
+			return;
+		}
+		
+		if (buffer.remaining () < RECORD_SIZE)
+		{
+			try
+			{
+				openSegment ();
+			}
+			catch (IOException e)
+			{
+				close ();
+				
+				return;
+			}
+		}
+		
+		buffer.putLong (event.getTime ());
+		buffer.put ((byte) (event.getKind ().ordinal () + 1));
+		buffer.put ((byte) 0);
+		buffer.put ((byte) 0);
+		buffer.put ((byte) 0);
+		buffer.putInt (event.getCustomer ());
+		buffer.putInt (event.getQueue ());
+		buffer.putInt (event.getValue ());
+	}
+	
+	/** Closes the journal. The records already appended are kept; records appended after this are ignored.
+	*/
+	synchronized void close ()
+	{
+		if (closed)
+		{
+			return;
+		}
+		
+		closed = true;
+		
+		closeSegment ();
+	}
+	
+	//a previous journal with the same name may have more segments than this one will have. they would be
+	//read after ours, so all of them go, not just the ones this journal overwrites
+	private void deleteSegments () throws IOException
+	{
+		for (int i = 0; ; i++)
+		{
+			File f = new File (segmentName (basename, i));
+			
+			if (! f.exists ())
+			{
+				return;
+			}
+			
+			if (! f.delete ())
+			{
+				throw new IOException ("cannot delete " + f);
+			}
+		}
+	}
+	
+	private void openSegment () throws IOException
+	{
+		closeSegment ();
+		
+		segment++;
+		
+		File f = new File (segmentName (basename, segment));
+		
+		file = new RandomAccessFile (f, "rw");
+		file.setLength (SEGMENT_SIZE);
+		
+		buffer = file.getChannel ().map (FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+		
+		buffer.putInt (MAGIC);
+		buffer.putInt (VERSION);
+		buffer.putInt (RECORD_SIZE);
+		buffer.putInt (segment);
+		buffer.putLong (id);
+}
+	
+	private void closeSegment ()
+	{
+		if (file == null)
+		{
+			return;
+		}
+		
+		//the mapping stays valid after the file is closed. the changes reach the file when the system
+		//decides, even if the program ends, so there's no need to force them here
+		try
+		{
+			file.close ();
+		}
+		catch (IOException e) {}
+		
+		file = null;
+	}
+}
@@ -0,0 +1,40 @@
+package simulation;
+
+/** Executes the tasks of a <code>Simulator</code> (customer arrivals, services, reorganizations) at the
+* time they were scheduled for. The scheduler also acts as the <code>Clock</code> of the simulation, so
+* everything that measures time during a simulation must use it instead of the system clock.
+* 
+* @version 1.0
+*/
+interface EventScheduler extends Clock
+{
+	/** Schedules a task to be executed once, after the specified delay.
+	* Tasks scheduled after <code>cancel</code> was called are ignored.
+	* 
+	* @param task the task to be executed.
+	* 
+	* @param delay the delay after which the task is executed. Expressed in milliseconds.
+	*/
+	void schedule (Runnable task, long delay);
+
+	/** Schedules a task to be executed repeatedly, at a fixed rate, starting after the specified delay.
+	* Tasks scheduled after <code>cancel</code> was called are ignored.
+	* 
+	* @param task the task to be executed.
+	* 
+	* @param delay the delay after which the task is executed for the first time. Expressed in milliseconds.
+	* 
+	* @param period the time between successive executions. Expressed in milliseconds.
+	*/
+	void scheduleAtFixedRate (Runnable task, long delay, long period);
+
+	/** Processes the scheduled tasks. Depending on the implementation, this either returns
+	* immediately (the tasks are executed by other threads) or it executes the tasks itself
+	* and only returns when there are no more tasks or when the scheduler was cancelled.
+	*/
+	void process ();
+
+	/** Cancels the scheduler. Tasks that have not been executed yet will never be executed.
+	*/
+	void cancel ();
+}
@@ -0,0 +1,507 @@
+package simulation;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Observable;
+
+/** Replays a simulation recorded in a binary event journal (see <code>SimulatorBuilder.setJournal</code>).
+* The replayer reads the journal and sends to its observers the same messages the <code>Simulator</code> sent
+* during the recorded run (see the documentation of <code>Simulator</code> for their format). At the same time,
+* it rebuilds the state of the queues and records the run into a fresh <code>Statistics</code> object, so the
+* results of a run can be analysed again without simulating it again.
+* 
+* The replayed events are also delivered as <code>SimulationEvent</code>s to the registered
+* <code>SimulationListener</code>s.
+* 
+* While handling a message, the observers can ask the replayer about the state of the queues, exactly like
+* they would ask the <code>Simulator</code> (<code>getQueueSize</code>, <code>isOpenQueue</code>, etc.).
+* 
+* The replay can run as fast as possible (the default) or at a speed relative to the recorded run.
+* 
+* The journal ends with the first segment that is not full (or the first one missing). The records are checked
+* against the state of the queues, so a journal mixed with the files of another run is reported as not valid
+* instead of corrupting the statistics.
+* 
+* @author Murzea Radu
+* 
+* @version 1.2
+*/
+public final class JournalReplayer extends Observable
+{
+	//the name of the journal files, without the segment number and the extension
+	private final String basename;
+	
+	//replay speed relative to the recorded run. 0 means as fast as possible
+	private double speed;
+	
+	private volatile boolean stopped;
+	
+	//the state of the queues
+	private int[] sizes;
+	private boolean[] opened;
+	
+	private Statistics stat;
+	
+	//the time of the event being replayed. it's the clock of the statistics
+	private volatile long now;
+	
+	private long starttime;
+	
+	private final ListenerList listeners = new ListenerList ();
+	
+	//the event being replayed, reused for all events
+	private final SimulationEvent event = new SimulationEvent ();
+	
+	/** Creates a replayer for the journal with the specified name.
+	* 
+	* @param basename the name of the journal files, without the segment number and the extension
+	* (the same name given to <code>SimulatorBuilder.setJournal</code>).
+	* 
+	* @throws NullPointerException if <code>basename</code> is null.
+	*/
+	public JournalReplayer (String basename)
+	{
+		if (basename == null)
+		{
+			throw new NullPointerException ("name expected, null provided");
+		}
+		
+		this.basename = basename;
+		this.speed = 0;
+		this.stopped = false;
+		this.sizes = new int[0];
+		this.opened = new boolean[0];
+	}
+	
+	/** Sets the speed of the replay, relative to the recorded run. For example, 1 replays the run in the same
+	* time it took to record it and 10 replays it ten times faster. 0 (the default) replays the run as fast as
+	* possible.
+	* 
+	* @param speed the speed multiplier.
+	* 
+	* @throws IllegalArgumentException if <code>speed</code> is negative or not a number.
+	*/
+	public void setSpeed (double speed)
+	{
+		if (! (speed >= 0))
+		{
+			throw new IllegalArgumentException ("speed out of range");
+		}
+		
+		this.speed = speed;
+	}
+	
+	/** Replays the journal. This method returns when all the recorded events were replayed or when
+	* <code>stopReplay</code> is called.
+	* 
+	* @throws IOException if the journal can't be read or is not a valid journal.
+	*/
+	public void replay () throws IOException
+	{
+		stopped = false;
+		
+		long firsttime = Long.MIN_VALUE;
+		long wallstart = System.currentTimeMillis ();
+		
+		//the ID of the journal, read from its first segment
+		long id = 0;
+		
+		//set when a segment is not full, the last one of the journal
+		boolean ended = false;
+		
+		for (int segment = 0; ! stopped && ! ended; segment++)
+		{
+			File f = new File (EventJournal.segmentName (basename, segment));
+			
+			//the first segment must exist, the others end the journal
+			if (! f.exists ())
+			{
+				if (segment == 0)
+				{
+					throw new IOException ("journal not found: " + f);
+				}
+				
+				break;
+			}
+			
+			RandomAccessFile file = new RandomAccessFile (f, "r");
+			MappedByteBuffer buffer;
+			
+			try
+			{
+				buffer = file.getChannel ().map (FileChannel.MapMode.READ_ONLY, 0, file.length ());
+			}
+			finally
+			{
+				file.close ();
+			}
+			
+			if (buffer.remaining () < EventJournal.HEADER_SIZE ||
+				buffer.getInt () != EventJournal.MAGIC ||
+				buffer.getInt () != EventJournal.VERSION ||
+				buffer.getInt () != EventJournal.RECORD_SIZE ||
+				buffer.getInt () != segment)
+			{
+				throw new IOException ("not a valid journal segment: " + f);
+			}
+			
+			long segmentid = buffer.getLong ();
+			
+			if (segment == 0)
+			{
+				id = segmentid;
+			}
+			else if (segmentid != id)
+			{
+				throw new IOException ("not a valid journal segment: " + f + " belongs to another journal");
+			}
+			
+			while (! stopped && buffer.remaining () >= EventJournal.RECORD_SIZE)
+			{
+				long time = buffer.getLong ();
+				byte type = buffer.get ();
+				buffer.get ();
+				buffer.get ();
+				buffer.get ();
+				int customer = buffer.getInt ();
+				int queue = buffer.getInt ();
+				int value = buffer.getInt ();
+				
+				//the rest of the segment is empty, so it's the last one
+				if (type == 0)
+				{
+					ended = true;
+					break;
+				}
+				
+				if (firsttime == Long.MIN_VALUE)
+				{
+					firsttime = time;
+				}
+				
+				if (speed > 0)
+				{
+					waitUntil (wallstart + (long) ((time - firsttime) / speed));
+				}
+				
+				now = time;
+				
+				replayEvent (type, customer, queue, value);
+			}
+		}
+	}
+	
+	/** Registers a listener that will receive the replayed events as <code>SimulationEvent</code>s, including
+	* the <code>CUSTOMERS_MOVED</code> events which have no <code>String</code> message.
+	* 
+	* @param listener the listener.
+	* 
+	* @throws NullPointerException if <code>listener</code> is null.
+	*/
+	public void addSimulationListener (SimulationListener listener)
+	{
+		listeners.add (listener);
+	}
+	
+	/** Removes a listener registered with <code>addSimulationListener</code>.
+	* 
+	* @param listener the listener.
+	*/
+	public void removeSimulationListener (SimulationListener listener)
+	{
+		listeners.remove (listener);
+	}
+	
+	/** Stops the replay. The events that were not replayed yet are ignored.
+	*/
+	public void stopReplay ()
+	{
+		stopped = true;
+	}
+	
+	/** Returns the statistics rebuilt from the journal.
+	* 
+	* @return the statistics, or null if the start of the simulation was not replayed yet.
+	*/
+	public Statistics getStatistics ()
+	{
+		return stat;
+	}
+	
+	/** Returns the number of queues of the recorded simulation.
+	* 
+	* @return the number of queues, 0 if the start of the simulation was not replayed yet.
+	*/
+	public int getNrOfQueues ()
+	{
+		return sizes.length;
+	}
+	
+	/** Returns the size of the queue at the specified index, at the moment of the event being replayed.
+	* 
+	* @param index the location of the queue.
+	* 
+	* @throws IndexOutOfBoundsException if the queue at location <code>index</code> doesn't exist.
+	* 
+	* @return the size of the queue.
+	*/
+	public int getQueueSize (int index)
+	{
+		if (index < 0 || index >= sizes.length)
+		{
+			throw new IndexOutOfBoundsException ("queue doesnt exist");
+		}
+		
+		return sizes[index];
+	}
+	
+	/** Tells if a queue is open or not, at the moment of the event being replayed.
+	* 
+	* @param index the queue which to check.
+	* 
+	* @throws IndexOutOfBoundsException if the queue at location <code>index</code> doesn't exist.
+	* 
+	* @return true if the queue is open, false otherwise.
+	*/
+	public boolean isOpenQueue (int index)
+	{
+		if (index < 0 || index >= opened.length)
+		{
+			throw new IndexOutOfBoundsException ("queue doesnt exist");
+		}
+		
+		return opened[index];
+	}
+	
+	/** Returns the simulated time elapsed from the start of the recorded simulation until the event being
+	* replayed.
+	* 
+	* @return the elapsed time. Expressed in seconds.
+	*/
+	public int getElapsedTime ()
+	{
+		return (int) ((now - starttime) / 1000);
+	}
+	
+	//applies the event to the state and the statistics, like the simulator did, then notifies the observers.
+	//a record that the simulator could not have written means the journal is not valid
+	private void replayEvent (byte type, int customer, int queue, int value) throws IOException
+	{
+		SimulationEvent.Kind kind = EventJournal.kind (type);
+		
+		//unknown records are skipped
+		if (kind == null)
+		{
+			return;
+		}
+		
+		check (kind, customer, queue, value);
+		
+		event.set (kind, now, customer, queue, value);
+		
+		switch (kind)
+		{
+			case SIMULATION_STARTED:
+				start (queue);
+				fire ();
+				break;
+			case SIMULATION_FINISHED:
+				stopRecording ();
+				fire ();
+				break;
+			case SIMULATION_ERROR:
+			case SIMULATION_STOPPED:
+				fire ();
+				stopRecording ();
+				break;
+			case QUEUE_OPENED:
+				opened[queue] = true;
+				stat.recordEmptyQueue (queue, true);
+				fire ();
+				break;
+			case QUEUE_CLOSED:
+				opened[queue] = false;
+				stat.recordEmptyQueue (queue, false);
+				fire ();
+				break;
+			case CUSTOMER_ARRIVED:
+				if (sizes[queue] == 0)
+				{
+					stat.recordEmptyQueue (queue, false);
+				}
+				
+				sizes[queue]++;
+				event.set (kind, now, customer, queue, value, sizes[queue], 0);
+				fire ();
+				
+				try
+				{
+					stat.recordArrivingCustomer (Customer.restore (customer, value));
+				}
+				catch (IllegalArgumentException e)
+				{
+					throw new IOException ("not a valid journal: " + e.getMessage (), e);
+				}
+				break;
+			case CUSTOMER_LEFT:
+				try
+				{
+					stat.recordLeavingCustomer (Customer.restore (customer, value));
+				}
+				catch (IllegalArgumentException e)
+				{
+					throw new IOException ("not a valid journal: " + e.getMessage (), e);
+				}
+				
+				sizes[queue]--;
+				event.set (kind, now, customer, queue, value, sizes[queue], 0);
+				fire ();
+				
+				if (sizes[queue] == 0)
+				{
+					stat.recordEmptyQueue (queue, true);
+				}
+				break;
+			case CUSTOMERS_MOVED:
+				if (sizes[value] == 0)
+				{
+					stat.recordEmptyQueue (value, false);
+				}
+				
+				sizes[queue] -= customer;
+				sizes[value] += customer;
+				event.set (kind, now, customer, queue, value, sizes[queue], sizes[value]);
+				fire ();
+				break;
+			default:
+				fire ();
+				break;
+		}
+	}
+	
+	//checks a record against the state of the queues
+	private void check (SimulationEvent.Kind kind, int customer, int queue, int value) throws IOException
+	{
+		if (kind == SimulationEvent.Kind.SIMULATION_STARTED)
+		{
+			if (queue < 1)
+			{
+				throw new IOException ("not a valid journal: " + queue + " queues");
+			}
+			
+			return;
+		}
+		
+		if (stat == null)
+		{
+			throw new IOException ("not a valid journal: the start of the simulation was not recorded");
+		}
+		
+		switch (kind)
+		{
+			case QUEUE_OPENED:
+			case QUEUE_CLOSED:
+			case CUSTOMER_ARRIVED:
+				checkQueue (queue);
+				break;
+			case CUSTOMER_LEFT:
+				checkQueue (queue);
+				
+				if (sizes[queue] == 0)
+				{
+					throw new IOException ("not a valid journal: customer left the empty queue " + queue);
+				}
+				break;
+			case CUSTOMERS_MOVED:
+				checkQueue (queue);
+				checkQueue (value);
+				
+				if (customer < 0 || customer > sizes[queue])
+				{
+					throw new IOException ("not a valid journal: " + customer + " customers moved from queue "
+										+ queue + " of size " + sizes[queue]);
+				}
+				break;
+			default:
+				break;
+		}
+	}
+	
+	private void checkQueue (int queue) throws IOException
+	{
+		if (queue < 0 || queue >= sizes.length)
+		{
+			throw new IOException ("not a valid journal: queue " + queue + " doesn't exist");
+		}
+	}
+	
+	private void start (int nrqueues)
+	{
+		starttime = now;
+		
+		sizes = new int[nrqueues];
+		opened = new boolean[nrqueues];
+		
+		stat = new Statistics (nrqueues, new Clock ()
+		{
+			public long currentTimeMillis ()
+			{
+				return now;
+			}
+		});
+		
+		//all queues are open when the simulation starts
+		for (int i = 0; i < nrqueues; i++)
+		{
+			opened[i] = true;
+			stat.recordEmptyQueue (i, true);
+		}
+	}
+	
+	private void stopRecording ()
+	{
+		for (int i = 0; i < sizes.length; i++)
+		{
+			stat.recordEmptyQueue (i, false);
+		}
+	}
+	
+	//sends the current event to the listeners and, as a String message, to the observers
+	private void fire ()
+	{
+		listeners.fire (event);
+		
+		if (countObservers () > 0)
+		{
+			String message = event.toMessage ();
+			
+			if (message != null)
+			{
+				setChanged ();
+				notifyObservers (message);
+			}
+		}
+	}
+	
+	//sleeps until the specified system time (or until the replay is stopped)
+	private void waitUntil (long walltime)
+	{
+		long delay;
+		
+		while (! stopped && (delay = walltime - System.currentTimeMillis ()) > 0)
+		{
+			try
+			{
+				Thread.sleep (delay);
+			}
+			catch (InterruptedException e)
+			{
+				stopped = true;
+				Thread.currentThread ().interrupt ();
+			}
+		}
+	}
+}
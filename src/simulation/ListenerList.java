@@ -0,0 +1,68 @@
+package simulation;
+
+/** The <code>SimulationListener</code>s registered with a <code>Simulator</code> or a <code>JournalReplayer</code>.
+* The listeners are kept in an array that is replaced on every change, so delivering an event doesn't need any
+* lock and doesn't create any objects.
+* 
+* @version 1.0
+*/
+final class ListenerList
+{
+	private volatile SimulationListener[] listeners;
+	
+	ListenerList ()
+	{
+		listeners = new SimulationListener[0];
+	}
+	
+	synchronized void add (SimulationListener l)
+	{
+		if (l == null)
+		{
+			throw new NullPointerException ("listener expected, null provided");
+		}
+		
+		SimulationListener[] old = listeners;
+		SimulationListener[] rez = new SimulationListener[old.length + 1];
+		
+		System.arraycopy (old, 0, rez, 0, old.length);
+		rez[old.length] = l;
+		
+		listeners = rez;
+	}
+	
+	synchronized void remove (SimulationListener l)
+	{
+		SimulationListener[] old = listeners;
+		
+		for (int i = 0; i < old.length; i++)
+		{
+			if (old[i] == l)
+			{
+				SimulationListener[] rez = new SimulationListener[old.length - 1];
+				
+				System.arraycopy (old, 0, rez, 0, i);
+				System.arraycopy (old, i + 1, rez, i, old.length - i - 1);
+				
+				listeners = rez;
+				
+				return;
+			}
+		}
+	}
+	
+	boolean isEmpty ()
+	{
+		return listeners.length == 0;
+	}
+	
+	void fire (SimulationEvent event)
+	{
+		SimulationListener[] l = listeners;
+		
+		for (int i = 0; i < l.length; i++)
+		{
+			l[i].eventOccurred (event);
+		}
+	}
+}
@@ -0,0 +1,25 @@
+package simulation;
+
+/** Specifies how often the log of the <code>Simulator</code> is pushed to the disk. The log is written by a
+* background thread, in batches, so this only affects the time a record may spend in memory before
+* reaching the file, not the speed of the simulation.
+* 
+* @author Murzea Radu
+* 
+* @version 1.0
+*/
+public enum LogFlushPolicy
+{
+	/** The log is only flushed when its buffer is full and when the simulation ends.
+	*/
+	NONE,
+	
+	/** The log is flushed after each batch of records is written (group commit). This is the default.
+	*/
+	BATCH,
+	
+	/** The log is flushed and synchronized with the storage device (fsync) after each batch of records is
+	* written. The safest and the slowest option.
+	*/
+	SYNC
+}
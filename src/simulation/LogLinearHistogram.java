@@ -0,0 +1,169 @@
+package simulation;
+
+import java.io.Serializable;
+
+/** Histogram of non-negative <code>long</code> values with a bounded relative error, used for percentiles.
+* Values below 128 have their own bucket, so they are recorded exactly. Above that, every power of 2 is split
+* into 64 buckets of equal width (log-linear layout, like the one of HdrHistogram), so a value is reported with a
+* relative error of at most 1/128 (about 0.8%), no matter how large it is. The whole <code>long</code> range is
+* covered with less than 4000 buckets, so the memory used is fixed and small.
+* 
+* Histograms can be merged by adding their buckets, with the same result as if all values had been recorded
+* in a single histogram.
+* 
+* This class is not thread-safe.
+* 
+* @version 1.0
+*/
+final class LogLinearHistogram implements Serializable
+{
+	//id useful for serializable interface
+	private static final long serialVersionUID = -2184629917042581774L;
+	
+	//the values below 2^SUB_BITS are recorded exactly
+	private static final int SUB_BITS = 7;
+	
+	//the number of buckets each power of 2 is split into
+	private static final int HALF = 1 << (SUB_BITS - 1);
+	
+	//enough buckets for Long.MAX_VALUE
+	private static final int NR_BUCKETS = (63 - SUB_BITS + 1) * HALF + 2 * HALF;
+	
+	private final long[] counts;
+	
+	private long total;
+	
+	//the exact extremes, used to tighten the reported values
+	private long min;
+	private long max;
+	
+	LogLinearHistogram ()
+	{
+		counts = new long[NR_BUCKETS];
+		total = 0;
+		min = Long.MAX_VALUE;
+		max = 0;
+	}
+	
+	/** Records a value. Negative values are recorded as 0. Runs in constant time.
+	* 
+	* @param value the value.
+	*/
+	void record (long value)
+	{
+		if (value < 0)
+		{
+			value = 0;
+		}
+		
+		counts[bucket (value)]++;
+		total++;
+		
+		if (value < min)
+		{
+			min = value;
+		}
+		
+		if (value > max)
+		{
+			max = value;
+		}
+	}
+	
+	/** Adds all the values recorded by another histogram to this one.
+	* 
+	* @param other the other histogram.
+	*/
+	void merge (LogLinearHistogram other)
+	{
+		for (int i = 0; i < NR_BUCKETS; i++)
+		{
+			counts[i] += other.counts[i];
+		}
+		
+		total += other.total;
+		min = Math.min (min, other.min);
+		max = Math.max (max, other.max);
+	}
+	
+	long getCount ()
+	{
+		return total;
+	}
+	
+	/** Returns the value below which the specified percentage of the recorded values fall.
+	* 
+	* @param percentile the percentile, between 0 and 100 inclusively.
+	* 
+	* @throws IllegalArgumentException if <code>percentile</code> is out of bounds.
+	* 
+	* @return the value at the specified percentile, 0 if nothing was recorded.
+	*/
+	long getValueAtPercentile (double percentile)
+	{
+		if (! (percentile >= 0 && percentile <= 100))
+		{
+			throw new IllegalArgumentException ("percentile out of bounds");
+		}
+		
+		if (total == 0)
+		{
+			return 0;
+		}
+		
+		//the rank of the value we're looking for (1 is the smallest value)
+		long rank = Math.max (1, (long) Math.ceil (percentile / 100 * total));
+		
+		//the extremes are known exactly
+		if (rank == 1)
+		{
+			return min;
+		}
+		else if (rank >= total)
+		{
+			return max;
+		}
+		
+		long seen = 0;
+		
+		for (int i = 0; i < NR_BUCKETS; i++)
+		{
+			seen += counts[i];
+			
+			if (seen >= rank)
+			{
+				return Math.min (max, Math.max (min, representative (i)));
+			}
+		}
+		
+		return max;
+	}
+	
+	//the bucket of a non-negative value
+	private static int bucket (long value)
+	{
+		if (value < 2 * HALF)
+		{
+			return (int) value;
+		}
+		
+		//the number of low bits dropped so the value fits in [HALF, 2 * HALF)
+		int shift = 63 - Long.numberOfLeadingZeros (value) - (SUB_BITS - 1);
+		
+		return shift * HALF + (int) (value >>> shift);
+	}
+	
+	//the middle of the range of values covered by a bucket
+	private static long representative (int bucket)
+	{
+		if (bucket < 2 * HALF)
+		{
+			return bucket;
+		}
+		
+		int shift = bucket / HALF - 1;
+		long lowest = ((long) (bucket - shift * HALF)) << shift;
+		
+		return lowest + ((1L << shift) >>> 1);
+	}
+}
@@ -0,0 +1,365 @@
+package simulation;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/** Writes the log of a <code>Simulator</code> on a dedicated thread. The simulator only hands the records to
+* a bounded lock-free queue; formatting the time, parsing the messages and writing to the disk all happen on the
+* writer thread, outside of the simulator's lock. The writer takes all the records available at once, writes
+* them, and then flushes according to the <code>LogFlushPolicy</code> (group commit).
+* 
+* Adding a record never waits, because the simulator does it while holding its lock. If the queue is full, the
+* record is still added (so no record is ever lost) and the simulator waits for the writer to make room with
+* <code>awaitRoom</code>, after it releases the lock.
+* 
+* @version 1.1
+*/
+final class LogWriter
+{
+	//maximum number of records waiting to be written
+	private static final int CAPACITY = 8192;
+	
+	//maximum number of records written between two flushes
+	private static final int MAX_BATCH = 1024;
+	
+	//how long a producer waits before checking again if there is room in the queue (nanoseconds)
+	private static final long FULL_WAIT = 100000;
+	
+	//how long the writer sleeps when there is nothing to write, if nobody wakes it up (nanoseconds)
+	private static final long IDLE_WAIT = 50000000;
+	
+	//the kinds of records
+	private static final int EVENT = 0;
+	private static final int TEXT = 1;
+	private static final int LINE = 2;
+	
+	private final ConcurrentLinkedQueue<Record> records;
+	
+	//the number of records in the queue
+	private final AtomicInteger count;
+	
+	private final FileOutputStream file;
+	private final BufferedWriter buff;
+	private final LogFlushPolicy policy;
+	
+	private final Thread writer;
+	
+	//set by the writer before going to sleep, so the producers know they have to wake it up
+	private volatile boolean sleeping;
+	
+	private volatile boolean closed;
+	
+	//used by the writer thread to rebuild and format the events without creating objects
+	private final SimulationEvent event;
+	private final StringBuilder line;
+	private char[] chars;
+	
+	//timestamp formatting is cached for the second it was last done for
+	private final SimpleDateFormat timeformat;
+	private long cachedsecond;
+	private String cachedtimestamp;
+	
+	/** Creates the log file and starts the writer thread.
+	* 
+	* @param filename the name of the log file. If the file exists, it's overwritten.
+	* 
+	* @param policy specifies when the log is flushed.
+	* 
+	* @throws IOException if the file can't be created.
+	*/
+	LogWriter (String filename, LogFlushPolicy policy) throws IOException
+	{
+		this.records = new ConcurrentLinkedQueue<Record> ();
+		this.count = new AtomicInteger ();
+		this.file = new FileOutputStream (filename);
+		this.buff = new BufferedWriter (new OutputStreamWriter (file));
+		this.policy = policy;
+		this.sleeping = false;
+		this.closed = false;
+		this.event = new SimulationEvent ();
+		this.line = new StringBuilder (128);
+		this.chars = new char[128];
+		this.timeformat = new SimpleDateFormat ("[K:mm:ss]");
+		this.cachedsecond = Long.MIN_VALUE;
+		
+		this.writer = new Thread (new Runnable ()
+		{
+			public void run ()
+			{
+				writeRecords ();
+			}
+		}, "simulator-log-writer");
+		
+		//not a daemon: the log must be complete even if the program ends right after the simulation
+		this.writer.setDaemon (false);
+		this.writer.start ();
+	}
+	
+	/** Logs an event of the <code>Simulator</code>. The event is translated with <code>MessageParser</code>
+	* and preceded by its time. Events without a <code>String</code> message are not logged.
+	* 
+	* @param event the event. Only its fields are used, so it can be reused after this returns.
+	*/
+	void event (SimulationEvent event)
+	{
+		if (event.getKind () == SimulationEvent.Kind.CUSTOMERS_MOVED)
+		{
+			return;
+		}
+		
+		add (new Record (event));
+	}
+	
+	/** Logs a text, preceded by the time.
+	* 
+	* @param time the time of the text. Expressed in milliseconds.
+	* 
+	* @param text the text.
+	*/
+	void text (long time, String text)
+	{
+		add (new Record (TEXT, time, text));
+	}
+	
+	/** Logs a line of text, exactly as it is.
+	* 
+	* @param line the line.
+	*/
+	void line (String line)
+	{
+		add (new Record (LINE, 0, line));
+	}
+	
+	/** Tells the writer thread to write all the remaining records and close the log file. Doesn't wait for it,
+	* <code>awaitRoom</code> does. Records added after this are ignored.
+	*/
+	void close ()
+	{
+		closed = true;
+		LockSupport.unpark (writer);
+	}
+	
+	/** Waits until the queue has room for more records or, if the log was closed, until the writer thread has
+	* written everything and closed the file. Must not be called while holding the lock of the simulator.
+	*/
+	void awaitRoom ()
+	{
+		if (closed)
+		{
+			//the writer never waits for the simulator, so this always ends
+			boolean interrupted = false;
+			
+			while (writer.isAlive ())
+			{
+				try
+				{
+					writer.join ();
+				}
+				catch (InterruptedException e)
+				{
+					interrupted = true;
+				}
+			}
+			
+			if (interrupted)
+			{
+				Thread.currentThread ().interrupt ();
+			}
+			
+			return;
+		}
+		
+		while (count.get () >= CAPACITY && writer.isAlive () && ! closed)
+		{
+			LockSupport.parkNanos (this, FULL_WAIT);
+		}
+	}
+	
+	//never waits. the records above the capacity are kept too, awaitRoom slows the simulator down instead
+	private void add (Record r)
+	{
+		if (closed)
+		{
+			return;
+		}
+		
+		count.incrementAndGet ();
+		records.offer (r);
+		
+		if (sleeping)
+		{
+			LockSupport.unpark (writer);
+		}
+	}
+	
+	//the code of the writer thread
+	private void writeRecords ()
+	{
+		try
+		{
+			int batch = 0;
+			
+			while (true)
+			{
+				Record r = records.poll ();
+				
+				if (r != null)
+				{
+					count.decrementAndGet ();
+					write (r);
+					
+					if (++batch == MAX_BATCH)
+					{
+						commit ();
+						batch = 0;
+					}
+					
+					continue;
+				}
+				
+				//nothing more to write for now. end of the batch
+				if (batch > 0)
+				{
+					commit ();
+					batch = 0;
+				}
+				
+				if (closed && records.isEmpty ())
+				{
+					break;
+				}
+				
+				sleeping = true;
+				
+				//check again, a record may have been added before the producer saw the flag
+				if (records.isEmpty () && ! closed)
+				{
+					LockSupport.parkNanos (this, IDLE_WAIT);
+				}
+				
+				sleeping = false;
+			}
+		}
+		catch (IOException e)
+		{
+			//nothing can be logged anymore
+		}
+		finally
+		{
+			records.clear ();
+			count.set (0);
+			
+			try
+			{
+				buff.close ();
+			}
+			catch (IOException e) {}
+		}
+	}
+	
+	private void write (Record r) throws IOException
+	{
+		switch (r.kind)
+		{
+			case EVENT:
+				event.set (r.eventkind, r.time, r.customer, r.queue, r.value);
+				
+				line.setLength (0);
+				MessageParser.format (event, line);
+				
+				if (line.length () > chars.length)
+				{
+					chars = new char[line.length () * 2];
+				}
+				
+				line.getChars (0, line.length (), chars, 0);
+				
+				buff.write (timestamp (r.time));
+				buff.write (' ');
+				buff.write (chars, 0, line.length ());
+				break;
+			case TEXT:
+				buff.write (timestamp (r.time));
+				buff.write (' ');
+				buff.write (r.text);
+				break;
+			default:
+				buff.write (r.text);
+				break;
+		}
+		
+		buff.newLine ();
+	}
+	
+	//pushes the written records according to the policy
+	private void commit () throws IOException
+	{
+		if (policy == LogFlushPolicy.NONE)
+		{
+			return;
+		}
+		
+		buff.flush ();
+		
+		if (policy == LogFlushPolicy.SYNC)
+		{
+			file.getChannel ().force (false);
+		}
+	}
+	
+	//the formatted time. it's only formatted again when the second changes
+	private String timestamp (long time)
+	{
+		long second = time / 1000;
+		
+		if (second != cachedsecond)
+		{
+			cachedsecond = second;
+			cachedtimestamp = timeformat.format (new Date (time));
+		}
+		
+		return cachedtimestamp;
+	}
+	
+	private static final class Record
+	{
+		private final int kind;
+		private final long time;
+		private final String text;
+		
+		//the fields of an event
+		private final SimulationEvent.Kind eventkind;
+		private final int customer;
+		private final int queue;
+		private final int value;
+		
+		Record (int kind, long time, String text)
+		{
+			this.kind = kind;
+			this.time = time;
+			this.text = text;
+			this.eventkind = null;
+			this.customer = 0;
+			this.queue = 0;
+			this.value = 0;
+		}
+		
+		Record (SimulationEvent e)
+		{
+			this.kind = EVENT;
+			this.time = e.getTime ();
+			this.text = null;
+			this.eventkind = e.getKind ();
+			this.customer = e.getCustomer ();
+			this.queue = e.getQueue ();
+			this.value = e.getValue ();
+		}
+	}
+}
@@ -3,13 +3,26 @@ package simulation;
 /** Provides a utility method for transforming the update message received from the <code>Simulator</code> into
 * a more user-readable form. This class does not check the messages for validity, so parse the message without
 * first modifying it, otherwise unexpected results may be returned.
+* 
+* The messages are parsed in a single pass, character by character. The messages that never change
+* (<code>S|S</code>, <code>Q|F</code>, etc.) are translated to precomputed <code>String</code>s. The methods that
+* take a <code>StringBuilder</code> append the result to it, so a caller that reuses the same builder creates no
+* objects at all.
 *
 * @author Murzea Radu
 * 
-* @version 1.0
+* @version 1.2
 */
 public final class MessageParser
 {
+	//the renderings of the messages that never change
+	private static final String STARTED = "Simulation Started";
+	private static final String FINISHED = "Simulation Finished Successfully";
+	private static final String ERROR = "Simulation Finished as the Result of an Error";
+	private static final String STOPPED = "Simulation was stopped manually.";
+	private static final String FULL = "All Queues are Full";
+	private static final String REORGANIZED = "The Customers have reorganized themselves to other Queues";
+	
 	/** Parses the <code>message</code> to a more user-readable form.
 	* 
 	* @param message the message to be parsed.
@@ -32,77 +45,219 @@ public final class MessageParser
 			return message;
 		}
 		
-		String result = "";
+		String fixed = fixed (message);
 		
-		if (message.equals ("S|S"))
+		if (fixed != null)
 		{
-			result = "Simulation Started";
-			
-			return result;
+			return fixed;
 		}
-		else if (message.equals ("S|F"))
+		
+		return parse (message, new StringBuilder (64)).toString ();
+	}
+	
+	/** Parses the <code>message</code> to a more user-readable form and appends the result to <code>out</code>.
+	* Nothing is appended for an empty or unknown message.
+	* 
+	* @param message the message to be parsed.
+	* 
+	* @param out where the parsed message is appended.
+	* 
+	* @throws NullPointerException if <code>message</code> or <code>out</code> is null.
+	* 
+	* @return <code>out</code>.
+	* 
+	* @since 1.1
+	*/
+	public static StringBuilder parse (CharSequence message, StringBuilder out)
+	{
+		if (message == null || out == null)
 		{
-			result = "Simulation Finished Successfully";
-			
-			return result;
+			throw new NullPointerException ("string expected, null provided");
 		}
-		else if (message.equals ("S|E"))
+		
+		String fixed = fixed (message);
+		
+		if (fixed != null)
 		{
-			result = "Simulation Finished as the Result of an Error";
-			
-			return result;
+			return out.append (fixed);
 		}
-		else if (message.equals ("S|X"))
+		
+		int length = message.length ();
+		
+		//the messages with parameters are "Q|n|O", "Q|n|C", "C|id|A|n" and "C|id|L|n"
+		if (length < 5 || message.charAt (1) != '|')
 		{
-			result = "Simulation was stopped manually.";
+			return out;
 		}
-		else if (message.equals ("Q|F"))
+		
+		char type = message.charAt (0);
+		
+		//the end of the first number
+		int end = 2;
+		
+		while (end < length && message.charAt (end) != '|')
 		{
-			result = "All Queues are Full";
-			
-			return result;
+			end++;
 		}
-		else if (message.equals ("Q|R"))
+		
+		if (end + 1 >= length)
 		{
-			result = "The Customers have reorganized themselves to other Queues";
-			
-			return result;
+			return out;
 		}
 		
-		//if no matches were made up to this point,
-		//then it means we have a more complicated message to deal with
-		String[] msgelements = message.split ("\\|");
+		char operation = message.charAt (end + 1);
 		
-		if (msgelements[0].equals ("Q"))
+		if (type == 'Q')
 		{
-			if (msgelements[2].equals ("O"))
+			if (operation == 'O')
 			{
-				result = "Queue " + msgelements[1] + " was opened.";
-				
-				return result;
+				out.append ("Queue ").append (message, 2, end).append (" was opened.");
 			}
-			else if (msgelements[2].equals ("C"))
+			else if (operation == 'C')
 			{
-				result = "Queue " + msgelements[1] + " was closed.";
-				
-				return result;
+				out.append ("Queue ").append (message, 2, end).append (" was closed.");
 			}
 		}
-		
-		if (msgelements[0].equals ("C"))
+		else if (type == 'C')
 		{
-			result = "Customer " + msgelements[1];
+			out.append ("Customer ").append (message, 2, end);
+			
+			//the queue starts after the operation and its separator
+			int queue = end + 3;
 			
-			if (msgelements[2].equals ("A"))
+			if (queue <= length)
+			{
+				if (operation == 'A')
+				{
+					out.append (" has arrived at Queue ").append (message, queue, length);
+				}
+				else if (operation == 'L')
+				{
+					out.append (" was served at Queue ").append (message, queue, length).append (" and left.");
+				}
+			}
+		}
+		
+		return out;
+	}
+	
+	/** Appends the user-readable form of an event to <code>out</code>. The result is the same as parsing the
+	* message of the event (see <code>SimulationEvent.toMessage</code>), but the message is never built. Nothing
+	* is appended for events that have no message.
+	* 
+	* @param event the event.
+	* 
+	* @param out where the parsed message is appended.
+	* 
+	* @throws NullPointerException if <code>event</code> or <code>out</code> is null.
+	* 
+	* @return <code>out</code>.
+	* 
+	* @since 1.1
+	*/
+	public static StringBuilder format (SimulationEvent event, StringBuilder out)
+	{
+		if (event == null)
+		{
+			throw new NullPointerException ("event expected, null provided");
+		}
+		
+		return format (event.getKind (), event.getCustomer (), event.getQueue (), out);
+	}
+	
+	/** Appends the user-readable form of an event to <code>out</code>, like <code>format (SimulationEvent,
+	* StringBuilder)</code>, but taking the fields of the event. Useful for callers that store the events in
+	* their own form.
+	* 
+	* @param kind the kind of the event.
+	* 
+	* @param customer the customer field of the event.
+	* 
+	* @param queue the queue field of the event.
+	* 
+	* @param out where the parsed message is appended.
+	* 
+	* @throws NullPointerException if <code>kind</code> or <code>out</code> is null.
+	* 
+	* @return <code>out</code>.
+	* 
+	* @since 1.2
+	*/
+	public static StringBuilder format (SimulationEvent.Kind kind, int customer, int queue, StringBuilder out)
+	{
+		if (kind == null || out == null)
+		{
+			throw new NullPointerException ("event expected, null provided");
+		}
+		
+		switch (kind)
+		{
+			case SIMULATION_STARTED:
+				return out.append (STARTED);
+			case SIMULATION_FINISHED:
+				return out.append (FINISHED);
+			case SIMULATION_ERROR:
+				return out.append (ERROR);
+			case SIMULATION_STOPPED:
+				return out.append (STOPPED);
+			case QUEUE_OPENED:
+				return out.append ("Queue ").append (queue).append (" was opened.");
+			case QUEUE_CLOSED:
+				return out.append ("Queue ").append (queue).append (" was closed.");
+			case QUEUES_FULL:
+				return out.append (FULL);
+			case CUSTOMERS_REORGANIZED:
+				return out.append (REORGANIZED);
+			case CUSTOMER_ARRIVED:
+				return out.append ("Customer ").append (customer).append (" has arrived at Queue ").append (queue);
+			case CUSTOMER_LEFT:
+				return out.append ("Customer ").append (customer)
+						.append (" was served at Queue ").append (queue).append (" and left.");
+			default:
+				return out;
+		}
+	}
+	
+	//returns the rendering of a message that never changes, null if the message is not one of them
+	private static String fixed (CharSequence message)
+	{
+		if (message.length () != 3 || message.charAt (1) != '|')
+		{
+			return null;
+		}
+		
+		char type = message.charAt (0);
+		char operation = message.charAt (2);
+		
+		if (type == 'S')
+		{
+			switch (operation)
 			{
-				result += " has arrived at Queue " + msgelements[3];
+				case 'S':
+					return STARTED;
+				case 'F':
+					return FINISHED;
+				case 'E':
+					return ERROR;
+				case 'X':
+					return STOPPED;
+				default:
+					return null;
 			}
-			else if (msgelements[2].equals ("L"))
+		}
+		else if (type == 'Q')
+		{
+			switch (operation)
 			{
-				result += " was served at Queue " + msgelements[3] + " and left.";
+				case 'F':
+					return FULL;
+				case 'R':
+					return REORGANIZED;
+				default:
+					return null;
 			}
 		}
 		
-		return result;
+		return null;
 	}
 }
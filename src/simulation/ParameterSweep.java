@@ -0,0 +1,454 @@
+package simulation;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Runs a simulation for every combination of a set of parameter values (a grid) and writes the results in CSV
+* format, one row per combination, as soon as each one is done. The combinations run in parallel.
+* 
+* The parameters that are not swept keep the values of the <code>SimulatorBuilder</code> given to the sweep.
+* Every simulation runs in virtual time, without a log and without a journal. By default, all of them use the
+* same seed, so the differences between the rows come from the parameters and not from the random numbers.
+* Combinations that are not valid (for example, a minimum arrival interval bigger than the maximum one) are
+* not simulated; their rows have the result <code>invalid</code>.
+* 
+* @author Murzea Radu
+* 
+* @version 1.0
+*/
+public final class ParameterSweep
+{
+	/** The parameters that can be swept.
+	*/
+	public enum Parameter
+	{
+		QUEUES ("queues"),
+		MAX_QUEUE_SIZE ("maxqueuesize"),
+		CUSTOMERS ("customers"),
+		MIN_ARRIVAL ("minarrival"),
+		MAX_ARRIVAL ("maxarrival"),
+		MIN_SERVICE ("minservice"),
+		MAX_SERVICE ("maxservice"),
+		REORGANIZATION ("reorganization");
+		
+		private final String column;
+		
+		private Parameter (String column)
+		{
+			this.column = column;
+		}
+		
+		/** Returns the name of the CSV column of the parameter.
+		* 
+		* @return the name of the column.
+		*/
+		public String getColumn ()
+		{
+			return column;
+		}
+	}
+	
+	/** Receives the progress of a sweep. It's notified on the thread that called <code>run</code>, after each
+	* row is written.
+	*/
+	public interface ProgressListener
+	{
+		/** Called after each combination is done.
+		* 
+		* @param completed the number of combinations done so far.
+		* 
+		* @param total the number of combinations.
+		* 
+		* @param elapsed the time since the sweep started. Expressed in milliseconds.
+		* 
+		* @param remaining the estimated time until the sweep ends. Expressed in milliseconds.
+		*/
+		void progressed (int completed, int total, long elapsed, long remaining);
+	}
+	
+	private static final Parameter[] PARAMETERS = Parameter.values ();
+	
+	private static final String[] RESULT_COLUMNS = {"result", "processed", "simulated.seconds", "wait.mean",
+													"wait.variance", "wait.p95", "wait.max", "service.mean",
+													"emptytime.mean", "run.ms"};
+	
+	private static final AtomicInteger POOL_NUMBER = new AtomicInteger (0);
+	
+	private final Simulator.SimulatorBuilder builder;
+	
+	//the values of every parameter. a parameter that is not swept has only the value of the builder
+	private final int[][] values;
+	
+	private int threads;
+	private long seed;
+	private boolean seeded;
+	private ProgressListener listener;
+	
+	/** Creates a sweep around the configuration of <code>builder</code>. The builder is not modified and can
+	* still be used afterwards.
+	* 
+	* @param builder the values of the parameters that are not swept, and all the other settings.
+	* 
+	* @throws NullPointerException if <code>builder</code> is null.
+	*/
+	public ParameterSweep (Simulator.SimulatorBuilder builder)
+	{
+		if (builder == null)
+		{
+			throw new NullPointerException ("SimulatorBuilder expected, null provided");
+		}
+		
+		this.builder = builder.copy ();
+		this.values = new int[PARAMETERS.length][];
+		this.threads = Runtime.getRuntime ().availableProcessors ();
+		this.listener = null;
+		
+		Simulator s = builder.copy ().build ();
+		
+		this.seeded = s.isSeeded ();
+		this.seed = s.getSeed ();
+		
+		values[Parameter.QUEUES.ordinal ()] = new int[] {s.getNrOfQueues ()};
+		values[Parameter.MAX_QUEUE_SIZE.ordinal ()] = new int[] {s.getMaxQueueSize ()};
+		values[Parameter.CUSTOMERS.ordinal ()] = new int[] {s.getNrOfCustomers ()};
+		values[Parameter.MIN_ARRIVAL.ordinal ()] = new int[] {s.getMinArrival ()};
+		values[Parameter.MAX_ARRIVAL.ordinal ()] = new int[] {s.getMaxArrival ()};
+		values[Parameter.MIN_SERVICE.ordinal ()] = new int[] {s.getMinService ()};
+		values[Parameter.MAX_SERVICE.ordinal ()] = new int[] {s.getMaxService ()};
+		values[Parameter.REORGANIZATION.ordinal ()] = new int[] {s.getReorganization ()};
+	}
+	
+	/** Sets the values a parameter takes during the sweep. Calling this again for the same parameter replaces
+	* its values.
+	* 
+	* @param parameter the parameter.
+	* 
+	* @param values the values, in the order in which they appear in the grid.
+	* 
+	* @throws NullPointerException if <code>parameter</code> or <code>values</code> is null.
+	* 
+	* @throws IllegalArgumentException if there are no values.
+	*/
+	public void setValues (Parameter parameter, int... values)
+	{
+		if (parameter == null)
+		{
+			throw new NullPointerException ("Parameter expected, null provided");
+		}
+		
+		if (values == null)
+		{
+			throw new NullPointerException ("values expected, null provided");
+		}
+		
+		if (values.length == 0)
+		{
+			throw new IllegalArgumentException ("no values");
+		}
+		
+		this.values[parameter.ordinal ()] = values.clone ();
+	}
+	
+	/** Sets the number of simulations that run at the same time. By default, there are as many as the available
+	* processors.
+	* 
+	* @param threads the number of threads. Any value greater than 0 is accepted.
+	* 
+	* @throws IllegalArgumentException if <code>threads</code> is less than 1.
+	*/
+	public void setThreads (int threads)
+	{
+		if (threads < 1)
+		{
+			throw new IllegalArgumentException ("nr of threads less than 1");
+		}
+		
+		this.threads = threads;
+	}
+	
+	/** Sets the seed of all the simulations. By default, the seed of the builder is used, if it was set, and a
+	* seed taken from the system clock otherwise.
+	* 
+	* @param seed the seed.
+	*/
+	public void setSeed (long seed)
+	{
+		this.seed = seed;
+		this.seeded = true;
+	}
+	
+	/** Sets the listener that receives the progress of the sweep.
+	* 
+	* @param listener the listener. Set to null to remove it.
+	*/
+	public void setProgressListener (ProgressListener listener)
+	{
+		this.listener = listener;
+	}
+	
+	/** Returns the number of combinations of the grid.
+	* 
+	* @return the number of combinations.
+	*/
+	public long getNrOfCombinations ()
+	{
+		long n = 1;
+		
+		for (int[] v : values)
+		{
+			n *= v.length;
+		}
+		
+		return n;
+	}
+	
+	/** Runs the simulations and writes the results. The first row has the names of the columns: the index of the
+	* combination, the parameters and the results. The other rows are written in the order in which the
+	* combinations are done, which is not necessarily the order of the grid. The writer is flushed after each row.
+	* 
+	* @param out where the CSV rows are written.
+	* 
+	* @throws IOException if the rows can't be written. The simulations that didn't start yet are cancelled.
+	* 
+	* @throws InterruptedException if the thread is interrupted while waiting. The simulations that didn't start
+	* yet are cancelled.
+	* 
+	* @throws IllegalStateException if the grid has more than 2^31 - 1 combinations, or if a simulation fails
+	* unexpectedly (an exception is thrown by the simulator).
+	*/
+	public void run (Writer out) throws IOException, InterruptedException
+	{
+		long combinations = getNrOfCombinations ();
+		
+		if (combinations > Integer.MAX_VALUE)
+		{
+			throw new IllegalStateException ("too many combinations");
+		}
+		
+		int total = (int) combinations;
+		long start = System.currentTimeMillis ();
+		long pointseed = seeded ? seed : System.nanoTime ();
+		
+		writeHeader (out);
+		
+		ExecutorService pool = Executors.newFixedThreadPool (Math.max (1, Math.min (threads, total)), new ThreadFactory ()
+		{
+			private final int poolnumber = POOL_NUMBER.incrementAndGet ();
+			private final AtomicInteger number = new AtomicInteger (0);
+			
+			public Thread newThread (Runnable r)
+			{
+				Thread t = new Thread (r, "simulator-sweep-" + poolnumber + "-" + number.incrementAndGet ());
+				t.setDaemon (true);
+				
+				return t;
+			}
+		});
+		
+		try
+		{
+			CompletionService<Point> done = new ExecutorCompletionService<Point> (pool);
+			
+			//each task computes the values of its combination from its index
+			for (int i = 0; i < total; i++)
+			{
+				done.submit (new Point (i, pointseed));
+			}
+			
+			StringBuilder row = new StringBuilder (256);
+			
+			for (int completed = 1; completed <= total; completed++)
+			{
+				Future<Point> f = done.take ();
+				Point p;
+				
+				try
+				{
+					p = f.get ();
+				}
+				catch (ExecutionException e)
+				{
+					throw new IllegalStateException ("simulation failed", e.getCause ());
+				}
+				
+				row.setLength (0);
+				p.appendTo (row);
+				out.write (row.toString ());
+				out.flush ();
+				
+				if (listener != null)
+				{
+					long elapsed = System.currentTimeMillis () - start;
+					
+					listener.progressed (completed, total, elapsed, elapsed * (total - completed) / completed);
+				}
+			}
+		}
+		finally
+		{
+			pool.shutdownNow ();
+		}
+	}
+	
+	private void writeHeader (Writer out) throws IOException
+	{
+		StringBuilder header = new StringBuilder ("index");
+		
+		for (Parameter p : PARAMETERS)
+		{
+			header.append (',').append (p.getColumn ());
+		}
+		
+		for (String c : RESULT_COLUMNS)
+		{
+			header.append (',').append (c);
+		}
+		
+		out.write (header.append ('\n').toString ());
+		out.flush ();
+	}
+	
+	//one combination of the grid and the results of its simulation
+	private final class Point implements Callable<Point>
+	{
+		private final int index;
+		private final long seed;
+		
+		//the values of the parameters, in the order of Parameter
+		private final int[] parameters;
+		
+		private boolean valid;
+		private boolean finished;
+		private int processed;
+		private int simulated;
+		private double waitmean;
+		private double waitvariance;
+		private double waitp95;
+		private double waitmax;
+		private double servicemean;
+		private double emptytime;
+		private long runtime;
+		
+		Point (int index, long seed)
+		{
+			this.index = index;
+			this.seed = seed;
+			this.parameters = new int[PARAMETERS.length];
+		}
+		
+		public Point call ()
+		{
+			//the index is split into one position per parameter, the last parameter changing fastest
+			int rest = index;
+			
+			for (int i = PARAMETERS.length - 1; i >= 0; i--)
+			{
+				parameters[i] = values[i][rest % values[i].length];
+				rest /= values[i].length;
+			}
+			
+			Simulator.SimulatorBuilder b = builder.copy ();
+			
+			try
+			{
+				b.setNrQueues (parameters[Parameter.QUEUES.ordinal ()]);
+				b.setMaxQueueSize (parameters[Parameter.MAX_QUEUE_SIZE.ordinal ()]);
+				b.setNrCustomers (parameters[Parameter.CUSTOMERS.ordinal ()]);
+				b.setArrivalInterval (parameters[Parameter.MIN_ARRIVAL.ordinal ()],
+										parameters[Parameter.MAX_ARRIVAL.ordinal ()]);
+				b.setServiceAmount (parameters[Parameter.MIN_SERVICE.ordinal ()],
+										parameters[Parameter.MAX_SERVICE.ordinal ()]);
+				b.setReorganization (parameters[Parameter.REORGANIZATION.ordinal ()]);
+			}
+			catch (IllegalArgumentException e)
+			{
+				valid = false;
+				
+				return this;
+			}
+			
+			valid = true;
+			
+			b.setVirtualTime (true);
+			b.setLogFile (null);
+			b.setJournal (null);
+			
+			b.setSeed (seed);
+			
+			long start = System.currentTimeMillis ();
+			
+			Simulator simulator = b.build ();
+			
+			simulator.simulate ();
+			
+			runtime = System.currentTimeMillis () - start;
+			
+			Statistics stat = simulator.getStatistics ();
+			
+			processed = stat.getNrOfProcessedCustomers ();
+			finished = processed == simulator.getNrOfCustomers ();
+			simulated = simulator.getElapsedTime ();
+			waitmean = stat.getAverageWaitingTimes (3);
+			waitvariance = stat.getWaitingTimesVariance (3);
+			waitp95 = stat.getWaitingTimePercentile (95);
+			waitmax = stat.getMaximumWaitingTime (3);
+			servicemean = stat.getAverageServiceAmounts (3);
+			
+			double sum = 0;
+			
+			for (int i = 0; i < simulator.getNrOfQueues (); i++)
+			{
+				sum += stat.getQueueEmptyTime (i, 3);
+			}
+			
+			emptytime = sum / simulator.getNrOfQueues ();
+			
+			return this;
+		}
+		
+		void appendTo (StringBuilder row)
+		{
+			row.append (index);
+			
+			for (int p : parameters)
+			{
+				row.append (',').append (p);
+			}
+			
+			if (! valid)
+			{
+				row.append (",invalid,,,,,,,,,\n");
+				
+				return;
+			}
+			
+			row.append (',').append (finished ? "finished" : "error");
+			row.append (',').append (processed);
+			row.append (',').append (simulated);
+			row.append (',').append (format (waitmean));
+			row.append (',').append (format (waitvariance));
+			row.append (',').append (format (waitp95));
+			row.append (',').append (format (waitmax));
+			row.append (',').append (format (servicemean));
+			row.append (',').append (format (emptytime));
+			row.append (',').append (runtime);
+			row.append ('\n');
+		}
+	}
+	
+	//a fixed decimal separator, so the CSV can always be parsed
+	private static String format (double value)
+	{
+		return String.format (Locale.US, "%.3f", value);
+	}
+}
@@ -1,24 +1,37 @@
 package simulation;
 
-import java.util.ArrayList;
-
 /** This class represents a queue. It can be opened and closed. <code>Customer</code>s can be
-* added and removed. The add operation runs in constant time (O (1)), the remove operations run in linear time (O (n)).
+* added and removed. The <code>Customer</code>s are stored in a circular buffer, so adding, removing
+* (from both ends) and accessing a <code>Customer</code> by its index run in constant time (O (1)).
+* The buffer grows as needed, up to the capacity of the <code>Queue</code>.
 * 
 * @author Murzea Radu
 * 
-* @version 1.1
+* @version 1.2
 */
 public class Queue
 {
-	//place holder for the customers
-	private ArrayList<Customer> customers;
+	//initial length of the buffer. it will grow when needed
+	private static final int INITIAL_BUFFER_SIZE = 16;
+	
+	//place holder for the customers (circular buffer)
+	private Customer[] customers;
+	
+	//the location of the head of the queue in the buffer
+	private int head;
+	
+	//the number of customers in the queue
+	private int size;
 
 	//specifies if the queue is opened or not.
 	private boolean opened;
 
 	//specifies the capacity of the queue
 	private int maxcustomers;
+	
+	//the index that must be notified about changes (if any) and the ID of the queue inside it
+	private QueueIndex index;
+	private int indexid;
 
 	/** Create a <code>Queue</code>. If the <code>Queue</code> is full, <code>Customer</code>s must be
 	* removed in order to add new ones. The <code>Queue</code> is initially closed.
@@ -35,7 +48,9 @@ public class Queue
 		}
 		
 		this.maxcustomers = maxcustomers;
-		customers = new ArrayList<Customer> ();
+		customers = new Customer[Math.min (maxcustomers, INITIAL_BUFFER_SIZE)];
+		head = 0;
+		size = 0;
 
 		//initially the queue is closed.
 		opened = false;
@@ -47,7 +62,17 @@ public class Queue
 	*/
 	public final void open ()
 	{
+		if (opened)
+		{
+			return;
+		}
+		
 		opened = true;
+		
+		if (index != null)
+		{
+			index.opened (indexid);
+		}
 	}
 
 	/** Closes the <code>Queue</code>. If the <code>Queue</code> is already closed, nothing happens.
@@ -58,13 +83,18 @@ public class Queue
 	*/
 	public final void close ()
 	{
-		if (customers.size () > 0)
+		if (size > 0)
 		{
 			throw new IllegalStateException ();
 		}
-		else
+		else if (opened)
 		{
 			opened = false;
+			
+			if (index != null)
+			{
+				index.closed (indexid);
+			}
 		}
 	}
 
@@ -87,7 +117,7 @@ public class Queue
 	*/
 	public final int getSize ()
 	{
-		return customers.size ();
+		return size;
 	}
 
 	/** Returns the maximum capacity of the <code>Queue</code>.
@@ -117,7 +147,7 @@ public class Queue
 		{
 			throw new IllegalStateException ("queue is closed");
 		}
-		else if (customers.size () == maxcustomers)
+		else if (size == maxcustomers)
 		{
 			throw new IllegalStateException ("queue is full");
 		}
@@ -126,7 +156,12 @@ public class Queue
 			throw new NullPointerException ("customer expected, null provided");
 		}
 
-		customers.add (a);
+		ensureBufferSize (size + 1);
+		
+		customers[index (size)] = a;
+		size++;
+		
+		sizeChanged (size - 1);
 	}
 
 	/** Removes the <code>Customer</code> from the head of the <code>Queue</code>.
@@ -137,13 +172,17 @@ public class Queue
 	*/
 	public final void removeFirstCustomer ()
 	{
-		if (customers.isEmpty ())
+		if (size == 0)
 		{
 			throw new IllegalStateException ("no customers in queue");
 		}
 		else
 		{
-			customers.remove (0);
+			customers[head] = null;
+			head = index (1);
+			size--;
+			
+			sizeChanged (size + 1);
 		}
 	}
 	
@@ -155,13 +194,16 @@ public class Queue
 	*/
 	public final void removeLastCustomer ()
 	{
-		if (customers.isEmpty ())
+		if (size == 0)
 		{
 			throw new IllegalStateException ("no customers in queue");
 		}
 		else
 		{
-			customers.remove (customers.size () - 1);
+			customers[index (size - 1)] = null;
+			size--;
+			
+			sizeChanged (size + 1);
 		}
 	}
 
@@ -177,13 +219,115 @@ public class Queue
 	*/
 	public final Customer getCustomer (int a)
 	{
-		if (a < 0 || a >= customers.size ())
+		if (a < 0 || a >= size)
 		{
 			throw new IndexOutOfBoundsException ("there is no customer at index a.");
 		}
 		else
 		{
-			return customers.get (a);
+			return customers[index (a)];
+		}
+	}
+	
+	/** Moves the last <code>n</code> <code>Customer</code>s of this <code>Queue</code> to the back of
+	* the <code>target</code> <code>Queue</code>. The moved <code>Customer</code>s keep their order.
+	* Runs in O (n).
+	*
+	* @param n the number of <code>Customer</code>s to move.
+	* 
+	* @param target the <code>Queue</code> that receives the <code>Customer</code>s.
+	*
+	* @throws IllegalArgumentException if <code>n</code> is negative or bigger than the size of this
+	* <code>Queue</code>, or if <code>target</code> is this <code>Queue</code>.
+	* 
+	* @throws IllegalStateException if <code>target</code> is closed or doesn't have room for
+	* <code>n</code> more <code>Customer</code>s.
+	* 
+	* @throws NullPointerException if <code>target</code> is null.
+	* 
+	* @since 1.2
+	*/
+	public final void drainLast (int n, Queue target)
+	{
+		if (target == null)
+		{
+			throw new NullPointerException ("queue expected, null provided");
+		}
+		else if (n < 0 || n > size || target == this)
+		{
+			throw new IllegalArgumentException ("invalid number of customers or target");
+		}
+		else if (target.opened == false)
+		{
+			throw new IllegalStateException ("target queue is closed");
+		}
+		else if (target.size + n > target.maxcustomers)
+		{
+			throw new IllegalStateException ("target queue is full");
+		}
+		
+		int oldsize = size, oldtargetsize = target.size;
+		
+		target.ensureBufferSize (target.size + n);
+		
+		for (int i = size - n; i < size; i++)
+		{
+			int from = index (i);
+			
+			target.customers[target.index (target.size)] = customers[from];
+			target.size++;
+			
+			customers[from] = null;
+		}
+		
+		size -= n;
+		
+		sizeChanged (oldsize);
+		target.sizeChanged (oldtargetsize);
+	}
+	
+	//attaches the queue to an index, which will be notified about every change of the queue
+	void attach (QueueIndex index, int id)
+	{
+		this.index = index;
+		this.indexid = id;
+	}
+	
+	//notifies the index (if any) that the size of the queue has changed
+	private void sizeChanged (int oldsize)
+	{
+		if (index != null)
+		{
+			index.sizeChanged (indexid, oldsize);
 		}
 	}
+	
+	//translates a location in the queue (0 is the head) into a location in the buffer
+	private int index (int location)
+	{
+		int i = head + location;
+		
+		return (i >= customers.length) ? i - customers.length : i;
+	}
+	
+	//makes sure the buffer can hold the specified number of customers
+	private void ensureBufferSize (int required)
+	{
+		if (required <= customers.length)
+		{
+			return;
+		}
+		
+		int newlength = (int) Math.min ((long) maxcustomers, Math.max ((long) required, 2L * customers.length));
+		
+		Customer[] newbuffer = new Customer[newlength];
+		
+		for (int i = 0; i < size; i++)
+		{
+			newbuffer[i] = customers[index (i)];
+		}
+		
+		customers = newbuffer;
+		head = 0;
+	}
 }
\ No newline at end of file
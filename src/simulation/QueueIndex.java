@@ -0,0 +1,286 @@
+package simulation;
+
+import java.util.Arrays;
+
+/** Keeps track of the state of a group of <code>Queue</code>s, so that questions like "how many queues are
+* open" or "are all the open queues full" can be answered in constant time, no matter how many
+* <code>Queue</code>s there are. The <code>Queue</code>s notify the index every time they change, so the index
+* is always up to date.
+* 
+* The open <code>Queue</code>s are also kept in two binary heaps ordered by size, so the smallest and the
+* largest open <code>Queue</code>s are found in constant time and each change costs O (log n). Between
+* <code>Queue</code>s of the same size, the one with the smallest ID comes first.
+* 
+* This class is not thread-safe. It must be used under the same synchronization as the <code>Queue</code>s.
+* 
+* @version 1.2
+*/
+final class QueueIndex
+{
+	//the indexed queues
+	private final Queue[] queues;
+	
+	//the number of open queues
+	private int nropen;
+	
+	//the number of open queues that still have room for at least one more customer
+	private int nrwithroom;
+	
+	//the open queues, smallest first
+	private final SizeHeap smallest;
+	
+	//the open queues, largest first
+	private final SizeHeap largest;
+	
+	/** Creates an index for the specified <code>Queue</code>s and attaches it to them. The location of a
+	* <code>Queue</code> in the array is its ID inside the index.
+	* 
+	* @param queues the <code>Queue</code>s.
+	*/
+	QueueIndex (Queue[] queues)
+	{
+		this.queues = queues;
+		this.nropen = 0;
+		this.nrwithroom = 0;
+		this.smallest = new SizeHeap (false);
+		this.largest = new SizeHeap (true);
+		
+		for (int i = 0; i < queues.length; i++)
+		{
+			queues[i].attach (this, i);
+			
+			if (queues[i].isOpen ())
+			{
+				opened (i);
+			}
+		}
+	}
+	
+	/** Returns the number of open <code>Queue</code>s.
+	* 
+	* @return the number of open <code>Queue</code>s.
+	*/
+	int getNrOfOpenQueues ()
+	{
+		return nropen;
+	}
+	
+	/** Tells if there is no open <code>Queue</code> with room for one more <code>Customer</code>.
+	* 
+	* @return true if all open <code>Queue</code>s are full (or if there is no open <code>Queue</code>),
+	* false otherwise.
+	*/
+	boolean isFull ()
+	{
+		return nrwithroom == 0;
+	}
+	
+	/** Returns the ID of the smallest open <code>Queue</code>.
+	* 
+	* @return the ID of the smallest open <code>Queue</code>, or -1 if no <code>Queue</code> is open.
+	*/
+	int getSmallestQueue ()
+	{
+		return smallest.first ();
+	}
+	
+	/** Returns the ID of the largest open <code>Queue</code>.
+	* 
+	* @return the ID of the largest open <code>Queue</code>, or -1 if no <code>Queue</code> is open.
+	*/
+	int getLargestQueue ()
+	{
+		return largest.first ();
+	}
+	
+	//called by a queue after it was opened
+	void opened (int id)
+	{
+		nropen++;
+		smallest.add (id);
+		largest.add (id);
+		
+		if (hasRoom (id))
+		{
+			nrwithroom++;
+		}
+	}
+	
+	//called by a queue after it was closed
+	void closed (int id)
+	{
+		nropen--;
+		smallest.remove (id);
+		largest.remove (id);
+		
+		if (hasRoom (id))
+		{
+			nrwithroom--;
+		}
+	}
+	
+	//called by an open queue after its size changed
+	void sizeChanged (int id, int oldsize)
+	{
+		boolean hadroom = oldsize < queues[id].getMaxSize ();
+		boolean hasroom = hasRoom (id);
+		
+		smallest.update (id);
+		largest.update (id);
+		
+		if (hadroom && ! hasroom)
+		{
+			nrwithroom--;
+		}
+		else if (hasroom && ! hadroom)
+		{
+			nrwithroom++;
+		}
+	}
+	
+	private boolean hasRoom (int id)
+	{
+		return queues[id].getSize () < queues[id].getMaxSize ();
+	}
+	
+	//indexed binary heap with the IDs of the open queues, ordered by the size of the queues
+	private final class SizeHeap
+	{
+		//tells if the largest queue is the first one (or the smallest)
+		private final boolean largestfirst;
+		
+		//the heap itself
+		private final int[] heap;
+		
+		//the location of every queue in the heap, -1 if the queue is not in the heap
+		private final int[] location;
+		
+		private int size;
+		
+		SizeHeap (boolean largestfirst)
+		{
+			this.largestfirst = largestfirst;
+			heap = new int[queues.length];
+			location = new int[queues.length];
+			size = 0;
+			
+			Arrays.fill (location, -1);
+		}
+		
+		int first ()
+		{
+			return (size == 0) ? -1 : heap[0];
+		}
+		
+		void add (int id)
+		{
+			heap[size] = id;
+			location[id] = size;
+			size++;
+			
+			siftUp (size - 1);
+		}
+		
+		void remove (int id)
+		{
+			int i = location[id];
+			
+			if (i < 0)
+			{
+				return;
+			}
+			
+			size--;
+			location[id] = -1;
+			
+			//fill the hole with the last element and move it where it belongs
+			if (i < size)
+			{
+				heap[i] = heap[size];
+				location[heap[i]] = i;
+				
+				siftDown (siftUp (i));
+			}
+		}
+		
+		void update (int id)
+		{
+			int i = location[id];
+			
+			if (i >= 0)
+			{
+				siftDown (siftUp (i));
+			}
+		}
+		
+		//tells if queue a must be closer to the root than queue b
+		private boolean before (int a, int b)
+		{
+			int sa = queues[a].getSize (), sb = queues[b].getSize ();
+			
+			if (sa == sb)
+			{
+				return a < b;
+			}
+			
+			return largestfirst ? sa > sb : sa < sb;
+		}
+		
+		//returns the final location of the element
+		private int siftUp (int i)
+		{
+			int id = heap[i];
+			
+			while (i > 0)
+			{
+				int parent = (i - 1) >>> 1;
+				
+				if (! before (id, heap[parent]))
+				{
+					break;
+				}
+				
+				heap[i] = heap[parent];
+				location[heap[i]] = i;
+				i = parent;
+			}
+			
+			heap[i] = id;
+			location[id] = i;
+			
+			return i;
+		}
+		
+		private void siftDown (int i)
+		{
+			int id = heap[i];
+			
+			while (true)
+			{
+				int child = 2 * i + 1;
+				
+				if (child >= size)
+				{
+					break;
+				}
+				
+				if (child + 1 < size && before (heap[child + 1], heap[child]))
+				{
+					child++;
+				}
+				
+				if (! before (heap[child], id))
+				{
+					break;
+				}
+				
+				heap[i] = heap[child];
+				location[heap[i]] = i;
+				i = child;
+			}
+			
+			heap[i] = id;
+			location[id] = i;
+		}
+	}
+}
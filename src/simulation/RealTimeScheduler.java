@@ -0,0 +1,180 @@
+package simulation;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** <code>EventScheduler</code> that executes the tasks at the real (system) time they were scheduled for.
+* The tasks are executed by a <code>ScheduledExecutorService</code>. Unless another one is specified, all
+* the schedulers in the JVM share the same executor, whose number of threads is equal to the number of
+* available processors, so running many simulators at the same time doesn't create any new threads.
+* Cancelling a scheduler only cancels its own tasks.
+* 
+* @version 1.2
+*/
+final class RealTimeScheduler implements EventScheduler
+{
+	//the executor used by all the schedulers that didn't specify their own
+	private static final ScheduledExecutorService SHARED_EXECUTOR = createSharedExecutor ();
+
+	//executes the tasks
+	private final ScheduledExecutorService executor;
+
+	//the tasks of this scheduler that may still be executed
+	private final Set<Task> pending;
+
+	//set when the scheduler is cancelled. scheduling after that is ignored
+	private volatile boolean cancelled;
+
+	/** Creates a scheduler that uses the executor shared by all the schedulers in the JVM.
+	*/
+	RealTimeScheduler ()
+	{
+		this (SHARED_EXECUTOR);
+	}
+
+	/** Creates a scheduler that executes its tasks with the specified executor.
+	* 
+	* @param executor the executor.
+	*/
+	RealTimeScheduler (ScheduledExecutorService executor)
+	{
+		this.executor = executor;
+		this.pending = Collections.newSetFromMap (new ConcurrentHashMap<Task, Boolean> ());
+		this.cancelled = false;
+	}
+
+	private static ScheduledExecutorService createSharedExecutor ()
+	{
+		ThreadFactory factory = new ThreadFactory ()
+		{
+			private final AtomicInteger counter = new AtomicInteger ();
+
+			public Thread newThread (Runnable r)
+			{
+				Thread t = new Thread (r, "simulator-scheduler-" + counter.incrementAndGet ());
+				t.setDaemon (true);
+
+				return t;
+			}
+		};
+
+		return new ScheduledThreadPoolExecutor (Runtime.getRuntime ().availableProcessors (), factory);
+	}
+
+	public long currentTimeMillis ()
+	{
+		return System.currentTimeMillis ();
+	}
+
+	public void schedule (Runnable task, long delay)
+	{
+		if (cancelled)
+		{
+			return;
+		}
+
+		Task t = new Task (task, false);
+		pending.add (t);
+
+		t.future = executor.schedule (t, delay, TimeUnit.MILLISECONDS);
+
+		recheck (t);
+	}
+
+	public void scheduleAtFixedRate (Runnable task, long delay, long period)
+	{
+		if (cancelled)
+		{
+			return;
+		}
+
+		Task t = new Task (task, true);
+		pending.add (t);
+
+		t.future = executor.scheduleAtFixedRate (t, delay, period, TimeUnit.MILLISECONDS);
+
+		recheck (t);
+	}
+
+	//the tasks are executed by the executor threads, nothing to do here
+	public void process ()
+	{
+	}
+
+	public void cancel ()
+	{
+		cancelled = true;
+
+		for (Task t : pending)
+		{
+			//a task whose future is not set yet is cancelled by recheck
+			if (t.future != null)
+			{
+				t.future.cancel (false);
+			}
+		}
+
+		pending.clear ();
+
+		//get rid of the cancelled tasks right away, other schedulers may use the same executor
+		if (executor instanceof ScheduledThreadPoolExecutor)
+		{
+			((ScheduledThreadPoolExecutor) executor).purge ();
+		}
+	}
+
+	//a cancel that ran between the check of the flag and the setting of the future didn't see the future.
+	//without this, a periodic task would keep being executed (and do nothing) forever
+	private void recheck (Task t)
+	{
+		if (cancelled)
+		{
+			t.future.cancel (false);
+			pending.remove (t);
+		}
+	}
+
+	//wraps a task of the simulator, so it can be cancelled together with the rest of the scheduler's tasks
+	private final class Task implements Runnable
+	{
+		private final Runnable task;
+		private final boolean periodic;
+		private volatile Future<?> future;
+
+		Task (Runnable task, boolean periodic)
+		{
+			this.task = task;
+			this.periodic = periodic;
+		}
+
+		public void run ()
+		{
+			if (cancelled)
+			{
+				//in case the future was set after the scheduler was cancelled
+				Future<?> f = future;
+
+				if (f != null)
+				{
+					f.cancel (false);
+				}
+
+				return;
+			}
+
+			if (! periodic)
+			{
+				pending.remove (this);
+			}
+
+			task.run ();
+		}
+	}
+}
@@ -0,0 +1,472 @@
+package simulation;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Runs several independent replications of the same simulation in parallel and aggregates their results.
+* A single simulation gives only one sample of its results; the replications give their mean, their variance and
+* a 95% confidence interval for it.
+* 
+* Every replication is built from a copy of the same <code>SimulatorBuilder</code> and gets its own seed, derived
+* from the seed of the runner, so the replications are independent but the whole run can be repeated. The
+* replications always run in virtual time, without a log and without a journal, and they share nothing, so they
+* scale with the number of processors.
+* 
+* @author Murzea Radu
+* 
+* @version 1.0
+*/
+public final class ReplicationRunner
+{
+	//used to derive the seeds of the replications
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+	
+	//the quantiles of Student's t distribution for a 95% confidence interval, by degrees of freedom (1 to 30)
+	private static final double[] T_QUANTILES = {12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262,
+												2.228, 2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101,
+												2.093, 2.086, 2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052,
+												2.048, 2.045, 2.042};
+	
+	private static final double Z_975 = 1.959964;
+	
+	private static final AtomicInteger POOL_NUMBER = new AtomicInteger (0);
+	
+	private final Simulator.SimulatorBuilder builder;
+	private final int replications;
+	
+	private int threads;
+	private long seed;
+	
+	/** Creates a runner for the simulation configured by <code>builder</code>. The builder is not modified and
+	* can still be used afterwards.
+	* 
+	* @param builder the configuration of the simulation.
+	* 
+	* @param replications the number of replications. Any value greater than 0 is accepted.
+	* 
+	* @throws NullPointerException if <code>builder</code> is null.
+	* 
+	* @throws IllegalArgumentException if <code>replications</code> is less than 1.
+	*/
+	public ReplicationRunner (Simulator.SimulatorBuilder builder, int replications)
+	{
+		if (builder == null)
+		{
+			throw new NullPointerException ("SimulatorBuilder expected, null provided");
+		}
+		
+		if (replications < 1)
+		{
+			throw new IllegalArgumentException ("nr of replications less than 1");
+		}
+		
+		this.builder = builder.copy ();
+		this.replications = replications;
+		this.threads = Runtime.getRuntime ().availableProcessors ();
+		this.seed = System.nanoTime ();
+	}
+	
+	/** Sets the number of replications that run at the same time. By default, there are as many as the available
+	* processors.
+	* 
+	* @param threads the number of threads. Any value greater than 0 is accepted.
+	* 
+	* @throws IllegalArgumentException if <code>threads</code> is less than 1.
+	*/
+	public void setThreads (int threads)
+	{
+		if (threads < 1)
+		{
+			throw new IllegalArgumentException ("nr of threads less than 1");
+		}
+		
+		this.threads = threads;
+	}
+	
+	/** Sets the seed from which the seeds of the replications are derived. Two runs with the same configuration
+	* and the same seed give the same results, whatever the number of threads. By default, the seed is taken from
+	* the system clock.
+	* 
+	* @param seed the seed.
+	*/
+	public void setSeed (long seed)
+	{
+		this.seed = seed;
+	}
+	
+	/** Runs all the replications and waits for them to end.
+	* 
+	* @throws InterruptedException if the thread is interrupted while waiting. The replications that didn't start
+	* yet are cancelled.
+	* 
+	* @throws IllegalStateException if a replication fails unexpectedly (an exception is thrown by the simulator).
+	* 
+	* @return the aggregated results.
+	*/
+	public Result run () throws InterruptedException
+	{
+		long start = System.currentTimeMillis ();
+		
+		ExecutorService pool = Executors.newFixedThreadPool (Math.min (threads, replications), new ThreadFactory ()
+		{
+			private final int poolnumber = POOL_NUMBER.incrementAndGet ();
+			private final AtomicInteger number = new AtomicInteger (0);
+			
+			public Thread newThread (Runnable r)
+			{
+				Thread t = new Thread (r, "simulator-replication-" + poolnumber + "-" + number.incrementAndGet ());
+				t.setDaemon (true);
+				
+				return t;
+			}
+		});
+		
+		try
+		{
+			CompletionService<Replication> done = new ExecutorCompletionService<Replication> (pool);
+			
+			for (int i = 0; i < replications; i++)
+			{
+				done.submit (new Replication (replicationSeed (seed, i)));
+			}
+			
+			Result result = null;
+			
+			//the results are aggregated as the replications end, in any order
+			for (int i = 0; i < replications; i++)
+			{
+				try
+				{
+					Replication r = done.take ().get ();
+					
+					if (result == null)
+					{
+						result = new Result (replications, r.emptytimes.length);
+					}
+					
+					result.add (r);
+				}
+				catch (ExecutionException e)
+				{
+					throw new IllegalStateException ("replication failed", e.getCause ());
+				}
+			}
+			
+			result.elapsed = System.currentTimeMillis () - start;
+			
+			return result;
+		}
+		finally
+		{
+			pool.shutdownNow ();
+		}
+	}
+	
+	//the seed of a replication. consecutive indexes give seeds that are far from each other (SplitMix64)
+	static long replicationSeed (long seed, int index)
+	{
+		long z = seed + (index + 1) * GOLDEN_GAMMA;
+		
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		
+		return z ^ (z >>> 31);
+	}
+	
+	//the quantile of Student's t distribution used for a 95% confidence interval
+	static double tQuantile (long degrees)
+	{
+		if (degrees <= T_QUANTILES.length)
+		{
+			return T_QUANTILES[(int) degrees - 1];
+		}
+		
+		//Cornish-Fisher expansion around the normal quantile. exact to 3 decimals from 30 degrees on
+		double z = Z_975;
+		double z3 = z * z * z;
+		
+		return z + (z3 + z) / (4.0 * degrees) + (5 * z3 * z * z + 16 * z3 + 3 * z) / (96.0 * degrees * degrees);
+	}
+	
+	//runs one replication and keeps what is aggregated
+	private final class Replication implements Callable<Replication>
+	{
+		private final long seed;
+		
+		private boolean finished;
+		private RunningAggregate waittimes;
+		private double averageservice;
+		private double[] emptytimes;
+		
+		Replication (long seed)
+		{
+			this.seed = seed;
+		}
+		
+		public Replication call ()
+		{
+			Simulator.SimulatorBuilder b = builder.copy ();
+			
+			b.setVirtualTime (true);
+			b.setLogFile (null);
+			b.setJournal (null);
+			b.setSeed (seed);
+			
+			Simulator simulator = b.build ();
+			
+			simulator.simulate ();
+			
+			Statistics stat = simulator.getStatistics ();
+			
+			//a simulation that ends with an error doesn't process all the customers
+			finished = stat.getNrOfProcessedCustomers () == simulator.getNrOfCustomers ();
+			
+			waittimes = new RunningAggregate ();
+			stat.addWaitingTimesTo (waittimes);
+			
+			averageservice = stat.getAverageServiceAmounts (3);
+			
+			emptytimes = new double[simulator.getNrOfQueues ()];
+			
+			for (int i = 0; i < emptytimes.length; i++)
+			{
+				emptytimes[i] = stat.getQueueEmptyTime (i, 3);
+			}
+			
+			return this;
+		}
+	}
+	
+	/** The aggregated results of the replications. Only the replications that finished successfully (without
+	* the queues overflowing) are aggregated.
+	*/
+	public static final class Result
+	{
+		private final int replications;
+		private int failed;
+		private long elapsed;
+		
+		//one value per replication
+		private final RunningAggregate waitingtime;
+		private final RunningAggregate waitingtimevariance;
+		private final RunningAggregate serviceamount;
+		private final RunningAggregate[] queueemptytime;
+		
+		//the waiting times of the customers of all the replications together
+		private final RunningAggregate pooledwaitingtimes;
+		
+		private Result (int replications, int nrqueues)
+		{
+			this.replications = replications;
+			this.failed = 0;
+			this.elapsed = 0;
+			this.waitingtime = new RunningAggregate ();
+			this.waitingtimevariance = new RunningAggregate ();
+			this.serviceamount = new RunningAggregate ();
+			this.queueemptytime = new RunningAggregate[nrqueues];
+			this.pooledwaitingtimes = new RunningAggregate ();
+			
+			for (int i = 0; i < nrqueues; i++)
+			{
+				queueemptytime[i] = new RunningAggregate ();
+			}
+		}
+		
+		private void add (Replication r)
+		{
+			if (! r.finished)
+			{
+				failed++;
+				
+				return;
+			}
+			
+			waitingtime.add (r.waittimes.getMean ());
+			waitingtimevariance.add (r.waittimes.getVariance ());
+			serviceamount.add (r.averageservice);
+			pooledwaitingtimes.merge (r.waittimes);
+			
+			for (int i = 0; i < queueemptytime.length; i++)
+			{
+				queueemptytime[i].add (r.emptytimes[i]);
+			}
+		}
+		
+		/** Returns the number of replications that were run.
+		* 
+		* @return the number of replications.
+		*/
+		public int getNrOfReplications ()
+		{
+			return replications;
+		}
+		
+		/** Returns the number of replications that ended with an error (an arriving customer found all the queues
+		* full). They are not included in the results.
+		* 
+		* @return the number of failed replications.
+		*/
+		public int getNrOfFailedReplications ()
+		{
+			return failed;
+		}
+		
+		/** Returns how long the replications took, from the start of the first one to the end of the last one.
+		* 
+		* @return the duration. Expressed in milliseconds.
+		*/
+		public long getElapsedTime ()
+		{
+			return elapsed;
+		}
+		
+		/** Returns the average waiting time of the customers, estimated from the averages of the replications.
+		* 
+		* @return the estimate. Expressed in seconds.
+		*/
+		public Estimate getWaitingTime ()
+		{
+			return new Estimate (waitingtime);
+		}
+		
+		/** Returns the variance of the waiting times of the customers, estimated from the variances of the
+		* replications.
+		* 
+		* @return the estimate. Expressed in seconds squared.
+		*/
+		public Estimate getWaitingTimeVariance ()
+		{
+			return new Estimate (waitingtimevariance);
+		}
+		
+		/** Returns the average service amount of the customers, estimated from the averages of the replications.
+		* 
+		* @return the estimate. Expressed in seconds.
+		*/
+		public Estimate getServiceAmount ()
+		{
+			return new Estimate (serviceamount);
+		}
+		
+		/** Returns the time a queue stayed open without customers, estimated from the replications.
+		* 
+		* @param queue the queue.
+		* 
+		* @throws IndexOutOfBoundsException if <code>queue</code> specifies a queue that doesn't exist.
+		* 
+		* @return the estimate. Expressed in seconds.
+		*/
+		public Estimate getQueueEmptyTime (int queue)
+		{
+			return new Estimate (queueemptytime[queue]);
+		}
+		
+		/** Returns the number of queues of the simulation.
+		* 
+		* @return the number of queues.
+		*/
+		public int getNrOfQueues ()
+		{
+			return queueemptytime.length;
+		}
+		
+		/** Returns the average of the waiting times of all the customers of all the replications, as if they
+		* were all in the same simulation.
+		* 
+		* @return the average waiting time. Expressed in seconds.
+		*/
+		public double getPooledWaitingTimeMean ()
+		{
+			return pooledwaitingtimes.getMean ();
+		}
+		
+		/** Returns the variance of the waiting times of all the customers of all the replications, as if they
+		* were all in the same simulation.
+		* 
+		* @return the sample variance. Expressed in seconds squared.
+		*/
+		public double getPooledWaitingTimeVariance ()
+		{
+			return pooledwaitingtimes.getVariance ();
+		}
+	}
+	
+	/** An estimate of a result of the simulation, computed from one value per replication: their mean, their
+	* variance and a 95% confidence interval for the mean, based on Student's t distribution.
+	*/
+	public static final class Estimate
+	{
+		private final long count;
+		private final double mean;
+		private final double variance;
+		private final double halfwidth;
+		
+		private Estimate (RunningAggregate values)
+		{
+			this.count = values.getCount ();
+			this.mean = values.getMean ();
+			this.variance = values.getVariance ();
+			this.halfwidth = (count < 2) ? Double.NaN : tQuantile (count - 1) * Math.sqrt (variance / count);
+		}
+		
+		/** Returns the number of values (successful replications) of the estimate.
+		* 
+		* @return the number of values.
+		*/
+		public long getCount ()
+		{
+			return count;
+		}
+		
+		/** Returns the mean of the values.
+		* 
+		* @return the mean, 0 if there are no values.
+		*/
+		public double getMean ()
+		{
+			return mean;
+		}
+		
+		/** Returns the sample variance of the values.
+		* 
+		* @return the variance, 0 if there are less than 2 values.
+		*/
+		public double getVariance ()
+		{
+			return variance;
+		}
+		
+		/** Returns the half-width of the 95% confidence interval of the mean.
+		* 
+		* @return the half-width, NaN if there are less than 2 values.
+		*/
+		public double getHalfWidth ()
+		{
+			return halfwidth;
+		}
+		
+		/** Returns the lower end of the 95% confidence interval of the mean.
+		* 
+		* @return the lower end, NaN if there are less than 2 values.
+		*/
+		public double getLower ()
+		{
+			return mean - halfwidth;
+		}
+		
+		/** Returns the upper end of the 95% confidence interval of the mean.
+		* 
+		* @return the upper end, NaN if there are less than 2 values.
+		*/
+		public double getUpper ()
+		{
+			return mean + halfwidth;
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package simulation;
+
+import java.io.Serializable;
+
+/** Constant-memory summary of a stream of values: count, sum, mean, variance, minimum and maximum.
+* The mean and the variance are updated with Welford's algorithm, which is numerically stable even for
+* very long streams. Two aggregates can be merged, with the same result as if all values had been added
+* to a single aggregate.
+* 
+* This class is not thread-safe.
+* 
+* @version 1.0
+*/
+final class RunningAggregate implements Serializable
+{
+	//id useful for serializable interface
+	private static final long serialVersionUID = 6401972335817405243L;
+	
+	private long count;
+	private double sum;
+	private double mean;
+	
+	//sum of the squared differences from the mean
+	private double m2;
+	
+	private double min;
+	private double max;
+	
+	RunningAggregate ()
+	{
+		count = 0;
+		sum = 0;
+		mean = 0;
+		m2 = 0;
+		min = Double.POSITIVE_INFINITY;
+		max = Double.NEGATIVE_INFINITY;
+	}
+	
+	/** Adds a value to the aggregate. Runs in constant time.
+	* 
+	* @param x the value.
+	*/
+	void add (double x)
+	{
+		count++;
+		sum += x;
+		
+		double delta = x - mean;
+		mean += delta / count;
+		m2 += delta * (x - mean);
+		
+		if (x < min)
+		{
+			min = x;
+		}
+		
+		if (x > max)
+		{
+			max = x;
+		}
+	}
+	
+	/** Adds all the values summarized by another aggregate to this one.
+	* 
+	* @param other the other aggregate.
+	*/
+	void merge (RunningAggregate other)
+	{
+		if (other.count == 0)
+		{
+			return;
+		}
+		
+		long n = count + other.count;
+		double delta = other.mean - mean;
+		
+		m2 += other.m2 + delta * delta * count * other.count / n;
+		mean += delta * other.count / n;
+		sum += other.sum;
+		count = n;
+		min = Math.min (min, other.min);
+		max = Math.max (max, other.max);
+	}
+	
+	long getCount ()
+	{
+		return count;
+	}
+	
+	double getSum ()
+	{
+		return sum;
+	}
+	
+	//0 if there are no values
+	double getMean ()
+	{
+		return mean;
+	}
+	
+	//the sample variance. 0 if there are less than 2 values
+	double getVariance ()
+	{
+		return (count < 2) ? 0 : m2 / (count - 1);
+	}
+	
+	//0 if there are no values
+	double getMin ()
+	{
+		return (count == 0) ? 0 : min;
+	}
+	
+	//0 if there are no values
+	double getMax ()
+	{
+		return (count == 0) ? 0 : max;
+	}
+}
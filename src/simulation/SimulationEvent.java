@@ -0,0 +1,227 @@
+package simulation;
+
+/** An event of a simulation, delivered to the <code>SimulationListener</code>s of a <code>Simulator</code> (or of
+* a <code>JournalReplayer</code>). It carries the same information as the <code>String</code> messages sent to the
+* observers, but in primitive fields, so nothing has to be concatenated or parsed.
+* 
+* The meaning of the customer, queue and value fields depends on the kind of the event (see <code>Kind</code>).
+* Fields that have no meaning for a kind are 0. The events that change the size of a queue also carry its size
+* right after the event, so the listeners don't have to read the state of the simulator, which may already be
+* further ahead.
+* 
+* To avoid creating an object for every event, the same <code>SimulationEvent</code> instance is reused for all
+* the events of a simulation. Listeners must not keep a reference to it after <code>eventOccurred</code>
+* returns; use <code>copy</code> if the event is needed later.
+* 
+* @author Murzea Radu
+* 
+* @version 1.1
+*/
+public final class SimulationEvent
+{
+	/** The kinds of events. */
+	public enum Kind
+	{
+		/** The simulation started (<code>S|S</code>). Customer: the number of customers. Queue: the number of
+		* queues. Value: the maximum queue size.
+		*/
+		SIMULATION_STARTED,
+		
+		/** The simulation finished successfully (<code>S|F</code>). */
+		SIMULATION_FINISHED,
+		
+		/** The simulation was terminated because of an error (<code>S|E</code>). */
+		SIMULATION_ERROR,
+		
+		/** The simulation was stopped from the outside (<code>S|X</code>). */
+		SIMULATION_STOPPED,
+		
+		/** A queue was opened (<code>Q|n|O</code>). Queue: the queue. */
+		QUEUE_OPENED,
+		
+		/** A queue was closed (<code>Q|n|C</code>). Queue: the queue. */
+		QUEUE_CLOSED,
+		
+		/** All open queues are full (<code>Q|F</code>). */
+		QUEUES_FULL,
+		
+		/** The customers reorganized themselves (<code>Q|R</code>). It's preceded by the
+		* <code>CUSTOMERS_MOVED</code> events of the reorganization.
+		*/
+		CUSTOMERS_REORGANIZED,
+		
+		/** A customer arrived (<code>C|id|A|n</code>). Customer: the ID. Queue: the queue.
+		* Value: the service needed (seconds).
+		*/
+		CUSTOMER_ARRIVED,
+		
+		/** A customer was served and left (<code>C|id|L|n</code>). Customer: the ID. Queue: the queue.
+		* Value: the service needed (seconds).
+		*/
+		CUSTOMER_LEFT,
+		
+		/** During a reorganization, customers were moved from the end of a queue to the end of another.
+		* There is no <code>String</code> message for this kind. Customer: the number of customers moved.
+		* Queue: the source queue. Value: the destination queue.
+		*/
+		CUSTOMERS_MOVED
+	}
+	
+	private Kind kind;
+	private long time;
+	private int customer;
+	private int queue;
+	private int value;
+	private int size;
+	private int targetsize;
+	
+	//events are created by the simulator (and the replayer) only
+	SimulationEvent ()
+	{
+	}
+	
+	//fills an event that doesn't change the size of any queue. returns it, for convenience
+	SimulationEvent set (Kind kind, long time, int customer, int queue, int value)
+	{
+		return set (kind, time, customer, queue, value, 0, 0);
+	}
+	
+	//fills the event. returns it, for convenience
+	SimulationEvent set (Kind kind, long time, int customer, int queue, int value, int size, int targetsize)
+	{
+		this.kind = kind;
+		this.time = time;
+		this.customer = customer;
+		this.queue = queue;
+		this.value = value;
+		this.size = size;
+		this.targetsize = targetsize;
+		
+		return this;
+	}
+	
+	//copies the fields of another event into this one
+	void copyFrom (SimulationEvent other)
+	{
+		set (other.kind, other.time, other.customer, other.queue, other.value, other.size, other.targetsize);
+	}
+	
+	/** Returns a copy of this event, which can be kept after the listener returns.
+	* 
+	* @return the copy.
+	*/
+	public SimulationEvent copy ()
+	{
+		return new SimulationEvent ().set (kind, time, customer, queue, value, size, targetsize);
+	}
+	
+	/** Returns the kind of the event.
+	* 
+	* @return the kind of the event.
+	*/
+	public Kind getKind ()
+	{
+		return kind;
+	}
+	
+	/** Returns the (simulated) time of the event.
+	* 
+	* @return the time of the event, with the same meaning as <code>System.currentTimeMillis ()</code>.
+	*/
+	public long getTime ()
+	{
+		return time;
+	}
+	
+	/** Returns the customer field of the event. For customer events, this is the ID of the customer.
+	* 
+	* @return the customer field.
+	*/
+	public int getCustomer ()
+	{
+		return customer;
+	}
+	
+	/** Returns the queue field of the event. For queue and customer events, this is the index of the queue.
+	* 
+	* @return the queue field.
+	*/
+	public int getQueue ()
+	{
+		return queue;
+	}
+	
+	/** Returns the additional value of the event. For customer events, this is the service needed by the
+	* customer (seconds).
+	* 
+	* @return the additional value.
+	*/
+	public int getValue ()
+	{
+		return value;
+	}
+	
+	/** Returns the number of customers in the queue of the event right after the event. Only meaningful for
+	* <code>CUSTOMER_ARRIVED</code>, <code>CUSTOMER_LEFT</code> and <code>CUSTOMERS_MOVED</code> (the source
+	* queue).
+	* 
+	* @return the size of the queue.
+	* 
+	* @since 1.1
+	*/
+	public int getQueueSize ()
+	{
+		return size;
+	}
+	
+	/** Returns the number of customers in the destination queue of a <code>CUSTOMERS_MOVED</code> event right
+	* after the move.
+	* 
+	* @return the size of the destination queue, 0 for the other kinds of events.
+	* 
+	* @since 1.1
+	*/
+	public int getTargetQueueSize ()
+	{
+		return targetsize;
+	}
+	
+	/** Returns the <code>String</code> message sent to the observers for this event (see <code>Simulator</code>).
+	* 
+	* @return the message, or null if there is no message for this kind of event.
+	*/
+	public String toMessage ()
+	{
+		switch (kind)
+		{
+			case SIMULATION_STARTED:
+				return "S|S";
+			case SIMULATION_FINISHED:
+				return "S|F";
+			case SIMULATION_ERROR:
+				return "S|E";
+			case SIMULATION_STOPPED:
+				return "S|X";
+			case QUEUE_OPENED:
+				return "Q|" + queue + "|O";
+			case QUEUE_CLOSED:
+				return "Q|" + queue + "|C";
+			case QUEUES_FULL:
+				return "Q|F";
+			case CUSTOMERS_REORGANIZED:
+				return "Q|R";
+			case CUSTOMER_ARRIVED:
+				return "C|" + customer + "|A|" + queue;
+			case CUSTOMER_LEFT:
+				return "C|" + customer + "|L|" + queue;
+			default:
+				return null;
+		}
+	}
+	
+	@Override public String toString ()
+	{
+		return kind + " [time=" + time + ", customer=" + customer + ", queue=" + queue + ", value=" + value + ", size=" + size
+				+ ", targetsize=" + targetsize + "]";
+	}
+}
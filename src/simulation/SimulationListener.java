@@ -0,0 +1,18 @@
+package simulation;
+
+/** Receives the events of a simulation as <code>SimulationEvent</code>s. This is the typed alternative to
+* observing the <code>Simulator</code> as an <code>Observable</code> and parsing its <code>String</code> messages.
+* 
+* @author Murzea Radu
+* 
+* @version 1.0
+*/
+public interface SimulationListener
+{
+	/** Called for every event of the simulation. The event object is reused for the next events, so it must not
+	* be kept after this method returns (use <code>SimulationEvent.copy</code> for that).
+	* 
+	* @param event the event.
+	*/
+	void eventOccurred (SimulationEvent event);
+}
@@ -1,10 +1,9 @@
 package simulation;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.locks.ReentrantLock;
 
 /** The simulation engine for the program. Contains all the logic of the simulation.
@@ -21,7 +20,7 @@ import java.util.concurrent.locks.ReentrantLock;
  * about the error, check the simulation log.</li>
  * <li><code>Q|3|O</code> - means the 3rd queue has been opened.</li>
  * <li><code>Q|7|C</code> - means the 7th queue has been closed.</li>
- * <li><code>Q|F</code> - means all queues have reached their maximum capacity. If a new customer arrives while in
+ * <li><code>Q|F</code> - means all open queues have reached their maximum capacity. If a new customer arrives while in
  * this state, the simulator will force a simulation shutdown and a "S|E" message will be sent.</li>
  * <li><code>C|27|A|2</code> - means the customer with ID 27 has arrived and was sent to the 2nd queue.</li>
  * <li><code>C|109|L|5</code> - means the customer with ID 109 was served at the 5th queue and left it.</li>
@@ -30,10 +29,26 @@ import java.util.concurrent.locks.ReentrantLock;
  * <br />
  * Use the method <code>MessageParser.parse</code> to transform the received message into a more user-readable form.
  * Note: The simulator uses it to parse the messages that go into the log.
+ * <br />
+ * The same events are also delivered as <code>SimulationEvent</code>s to the <code>SimulationListener</code>s
+ * registered with <code>addSimulationListener</code>. Those carry the information in primitive fields, so no
+ * <code>String</code> has to be built or parsed. The <code>String</code> messages are only built when there are
+ * observers.
+ * <br />
+ * The observers and the listeners are notified on a separate thread, after the simulator has released its lock,
+ * so they can't slow down the simulation (see <code>SimulatorBuilder.setSubscriberPolicy</code> for what happens
+ * when they can't keep up). The state of the simulator read while handling an event (the size of the queues etc.)
+ * may already include the effect of the events that follow it.
+ * <br />
+ * By default, the simulation runs in real time: a customer that needs 12 seconds of service will really be served
+ * for 12 seconds. If virtual time is enabled (see <code>SimulatorBuilder.setVirtualTime</code>), the simulation
+ * becomes a discrete-event simulation driven by a simulated clock: all events are processed as fast as possible, in
+ * the calling thread, and <code>simulate</code> only returns when the simulation is over. The statistics and the
+ * messages sent to the observers are the same in both modes.
  * 
  * @author Murzea Radu
  * 
- * @version 1.2
+ * @version 1.3
 */
 public final class Simulator extends Observable
 {
@@ -49,41 +64,62 @@ public final class Simulator extends Observable
 	//storage for the queues
 	private Queue[] queues;
 	
+	//keeps track of the state of the queues
+	private QueueIndex index;
+	
 	private ArrayList<Integer> closerequests;
-
+	
 	//stores the number of queues
 	private int nrqueues;
-
+	
 	//the maximum size of the queues
 	private int maxqueuesize;
-
+	
 	//stores the number of customers
 	private int nrcustomers;
-
+	
 	//minimum arrival interval (seconds)
 	private int minarrival;
-
+	
 	//maximum arrival interval (seconds)
 	private int maxarrival;
-
+	
 	//minimum serving interval (seconds)
 	private int minservice;
-
+	
 	//maximum serving interval (seconds)
 	private int maxservice;
 	
 	private int reorganization;
 	
 	private long starttime;
-
-	//timer used to to schedule customers arrival
-	private Timer arrtimer;
-
-	//timer used to schedule the serving of customers
-	private Timer servtimer;
 	
-	private Timer reorgtimer;
-
+	//tells if the simulation runs in virtual time (discrete-event) or in real time
+	private boolean virtualtime;
+	
+	//executes the arrivals, the services and the reorganizations. it's also the clock of the simulation
+	private EventScheduler scheduler;
+	
+	//the executor used in real time. null means the executor shared by all simulators
+	private ScheduledExecutorService executor;
+	
+	//random number generator for the arrival intervals
+	private Random arrivalrand;
+	
+	//creates the customers. the IDs and the service amounts belong to this simulator only,
+	//so several simulations can run at the same time
+	private CustomerFactory customers;
+	
+	//the seed of the random number generators, if it was set
+	private boolean seeded;
+	private long seed;
+	
+	//the number of customers whose arrival was scheduled so far
+	private int scheduledarrivals;
+	
+	//the time at which the last scheduled customer arrives
+	private long lastarrival;
+	
 	//statistics for waiting time
 	private Statistics stat;
 	
@@ -91,13 +127,36 @@ public final class Simulator extends Observable
 	//at a time (arriving customer, leaving customer etc.)
 	private final ReentrantLock _lock = new ReentrantLock ();
 	
-	//used to write the log to disk
-	private BufferedWriter buff;
+	//used to write the log to disk, on a separate thread. null if the log couldn't be created
+	private LogWriter log;
+	
+	//specifies when the log is flushed
+	private LogFlushPolicy logflushpolicy;
+	
+	//the name of the log file. null means a name with the current date
+	private String logfilename;
+	
+	//tells if the log is written at all
+	private boolean logenabled;
+	
+	//the name of the binary event journal, null if it's disabled
+	private String journalname;
+	
+	//the binary event journal. null if it's disabled or it couldn't be created
+	private EventJournal journal;
+	
+	//the listeners for typed events
+	private final ListenerList listeners = new ListenerList ();
+	
+	//the event object, reused for all events. only used while holding the lock
+	private final SimulationEvent event = new SimulationEvent ();
+	
+	//what to do when the observers and the listeners can't keep up
+	private SubscriberPolicy subscriberpolicy;
+	
+	//delivers the events to the observers and the listeners. created when the first event has subscribers
+	private volatile EventDispatcher dispatcher;
 	
-	//error flag. will be set by the TimerTasks to indicate error.
-	//the logging system will check for this and write it to the log if it contains any error messages
-	private String errormessage = "";
-
 	//construct and set default values (will be used if not changed)
 	private Simulator ()
 	{
@@ -109,15 +168,20 @@ public final class Simulator extends Observable
 		this.minservice = DEFAULT_MIN_SERVICE;
 		this.maxservice = DEFAULT_MAX_SERVICE;
 		this.reorganization = DEFAULT_REORGANIZATION;
-
+		this.virtualtime = false;
+		this.executor = null;
+		this.logflushpolicy = LogFlushPolicy.BATCH;
+		this.logfilename = null;
+		this.logenabled = true;
+		this.journalname = null;
+		this.subscriberpolicy = SubscriberPolicy.COALESCE;
+		this.seeded = false;
+		this.seed = 0;
+		
 		this.queues = new Queue[this.nrqueues];
 		this.stat = new Statistics (this.nrqueues);
 		
 		this.closerequests = new ArrayList<Integer> ();
-
-		this.arrtimer = new Timer ();
-		this.servtimer = new Timer ();
-		this.reorgtimer = new Timer ();
 	}
 	
 	public static SimulatorBuilder createSimulatorBuilder ()
@@ -152,34 +216,66 @@ public final class Simulator extends Observable
 			return this.obj;
 		}
 		
+		/** Creates a new builder with the same parameters as this one. Useful for building several
+		* Simulators with the same configuration. It can be called even after the build method.
+		* 
+		* @return the new builder.
+		*/
+		public SimulatorBuilder copy ()
+		{
+			SimulatorBuilder builder = new SimulatorBuilder ();
+			Simulator s = builder.obj;
+			
+			s.nrqueues = obj.nrqueues;
+			s.queues = new Queue[obj.nrqueues];
+			s.stat = new Statistics (obj.nrqueues);
+			s.maxqueuesize = obj.maxqueuesize;
+			s.nrcustomers = obj.nrcustomers;
+			s.minarrival = obj.minarrival;
+			s.maxarrival = obj.maxarrival;
+			s.minservice = obj.minservice;
+			s.maxservice = obj.maxservice;
+			s.reorganization = obj.reorganization;
+			s.virtualtime = obj.virtualtime;
+			s.executor = obj.executor;
+			s.logflushpolicy = obj.logflushpolicy;
+			s.logfilename = obj.logfilename;
+			s.logenabled = obj.logenabled;
+			s.journalname = obj.journalname;
+			s.subscriberpolicy = obj.subscriberpolicy;
+			s.seeded = obj.seeded;
+			s.seed = obj.seed;
+			
+			return builder;
+		}
+		
 		/** Sets the number of queues for the Simulator.
 		* 
-		* @param nrqueues the number of queues in the train station. Accepted values are between
-		* 1 and 10.
+		* @param nrqueues the number of queues in the train station. Any value greater than 0 is accepted.
 		* 
-		* @throws IllegalArgumentException if the parameter is outside of the allowed range.
+		* @throws IllegalArgumentException if the parameter is less than 1.
 		* 
 		* @throws IllegalStateException if the build method was already called.
 		*/
 		public void setNrQueues (int nrqueues)
 		{
 			this.check ();
-
-			if (nrqueues < 1 || nrqueues > 10)
+			
+			if (nrqueues < 1)
 			{
 				throw new IllegalArgumentException ("nr of queues out of range");
 			}
-
+			
 			this.obj.nrqueues = nrqueues;
 			this.obj.queues = new Queue[nrqueues];
 			this.obj.stat = new Statistics (nrqueues);
 		}
-
+		
 		/** Sets the maximum number of Customers a Queue can hold.
 		* 
-		* @param maxqueuesize the maximum number of customers. Accepted values are between 1 and 10.
+		* @param maxqueuesize the maximum number of customers. Any value greater than 0 is accepted.
 		* 
-		* @throws IllegalArgumentException if the parameter is outside of the allowed range.
+		* @throws IllegalArgumentException if the parameter is less than 1.
 		* 
 		* @throws IllegalStateException if the build method was already called.
 		*/
@@ -187,7 +283,7 @@ public final class Simulator extends Observable
 		{
 			this.check ();
 			
-			if (maxqueuesize < 1 || maxqueuesize > 10)
+			if (maxqueuesize < 1)
 			{
 				throw new IllegalArgumentException ("max queue size out of range");
 			}
@@ -215,7 +311,7 @@ public final class Simulator extends Observable
 			
 			this.obj.nrcustomers = nrcustomers;
 		}
-
+		
 		/** Sets the interval at which the Customers arrive.
 		* 
 		* @param minarrival the minimum arrival interval (seconds).
@@ -238,7 +334,7 @@ public final class Simulator extends Observable
 			this.obj.minarrival = minarrival;
 			this.obj.maxarrival = maxarrival;
 		}
-
+		
 		/** Sets the minimum and maximum service time needed by the Customers.
 		* 
 		* @param minservice the minimum service needed (seconds).
@@ -277,6 +373,124 @@ public final class Simulator extends Observable
 			this.obj.reorganization = reorganization;
 		}
 		
+		/** Sets the Simulator to run in virtual time. In this mode, the simulation is a discrete-event simulation
+		* driven by a simulated clock instead of the system clock: <code>simulate</code> processes all the events as
+		* fast as possible, in the calling thread, and returns only after the simulation is over.
+		* By default, the simulation runs in real time.
+		* 
+		* @param virtualtime true for virtual time, false for real time.
+		* 
+		* @throws IllegalStateException if the build method was already called.
+		*/
+		public void setVirtualTime (boolean virtualtime)
+		{
+			this.check ();
+			this.obj.virtualtime = virtualtime;
+		}
+		
+		/** Sets the executor that runs the simulation in real time. By default, all Simulators in the JVM
+		* share the same executor, which has as many threads as there are available processors.
+		* The executor is not shut down when the simulation ends. Ignored when running in virtual time.
+		* 
+		* @param executor the executor. Set to null to use the shared executor.
+		* 
+		* @throws IllegalStateException if the build method was already called.
+		*/
+		public void setExecutor (ScheduledExecutorService executor)
+		{
+			this.check ();
+			this.obj.executor = executor;
+		}
+		
+		/** Sets how often the log is pushed to the disk. The log is written by a background thread, so this
+		* doesn't slow down the simulation. The default is <code>LogFlushPolicy.BATCH</code>.
+		* 
+		* @param policy the flush policy.
+		* 
+		* @throws NullPointerException if <code>policy</code> is null.
+		* 
+		* @throws IllegalStateException if the build method was already called.
+		*/
+		public void setLogFlushPolicy (LogFlushPolicy policy)
+		{
+			this.check ();
+			
+			if (policy == null)
+			{
+				throw new NullPointerException ("policy expected, null provided");
+			}
+			
+			this.obj.logflushpolicy = policy;
+		}
+		
+		/** Sets the name of the log file. By default, the log is written to
+		* <code>simulator.&lt;date&gt;.log</code>, in the current directory. An existing file is overwritten.
+		* 
+		* @param filename the name of the log file. Set to null to disable the log.
+		* 
+		* @throws IllegalStateException if the build method was already called.
+		*/
+		public void setLogFile (String filename)
+		{
+			this.check ();
+			this.obj.logfilename = filename;
+			this.obj.logenabled = (filename != null);
+		}
+		
+		/** Enables the binary event journal. Every event of the simulation (the same ones sent to the observers,
+		* plus the individual customer moves of the reorganizations) is appended as a fixed-width record to a
+		* memory-mapped file. When a file is full, the journal continues in a new one. The files are named
+		* <code>&lt;basename&gt;.0.qmj</code>, <code>&lt;basename&gt;.1.qmj</code> etc. The files of a previous
+		* journal with the same name are deleted, all of them. The journal is disabled by default.
+		* 
+		* @param basename the name of the journal files, without the number and the extension. Set to null to
+		* disable the journal.
+		* 
+		* @throws IllegalStateException if the build method was already called.
+		*/
+		public void setJournal (String basename)
+		{
+			this.check ();
+			this.obj.journalname = basename;
+		}
+		
+		/** Sets what the simulator does when its observers and listeners can't keep up with the events. They are
+		* notified on a separate thread, through a bounded buffer, and the policy decides what happens when the
+		* buffer is full. The default is <code>SubscriberPolicy.COALESCE</code>.
+		* 
+		* @param policy the policy.
+		* 
+		* @throws NullPointerException if <code>policy</code> is null.
+		* 
+		* @throws IllegalStateException if the build method was already called.
+		*/
+		public void setSubscriberPolicy (SubscriberPolicy policy)
+		{
+			this.check ();
+			
+			if (policy == null)
+			{
+				throw new NullPointerException ("policy expected, null provided");
+			}
+			
+			this.obj.subscriberpolicy = policy;
+		}
+		
+		/** Sets the seed of the random numbers of the simulation (the arrival times and the service amounts).
+		* Two simulations with the same parameters and the same seed are identical. By default, the seed is
+		* taken from the time at which the simulation starts.
+		* 
+		* @param seed the seed.
+		* 
+		* @throws IllegalStateException if the build method was already called.
+		*/
+		public void setSeed (long seed)
+		{
+			this.check ();
+			this.obj.seeded = true;
+			this.obj.seed = seed;
+		}
+		
 		//checks if the simulator was built or not
 		private void check ()
 		{
@@ -287,21 +501,41 @@ public final class Simulator extends Observable
 		}
 	}
 	
-	//schedules all arrivals and servings of the customers
+	//prepares the arrivals of the customers. only the first one is scheduled here,
+	//every arriving customer schedules the one after him
 	private void scheduleCustomerArrivals ()
 	{
-		long now = System.currentTimeMillis ();
-
-		//random number generator for scheduling
-		Random rand = new Random (now / 1000);
-
-		//schedule each customer to arrive
-		for (int i = 0; i < this.nrcustomers; i++)
+		lastarrival = scheduler.currentTimeMillis ();
+		scheduledarrivals = 0;
+		
+		//random number generators for scheduling and for the service amounts
+		if (seeded)
 		{
-			now += rand.nextInt (1000 * (this.maxarrival - this.minarrival + 1)) + 1000 * this.minarrival;
-			
-			arrtimer.schedule (new CustomerArriver (), new Date (now));
+			arrivalrand = new Random (seed);
+			customers = new CustomerFactory (minservice, maxservice, arrivalrand.nextLong ());
 		}
+		else
+		{
+			arrivalrand = new Random (lastarrival / 1000);
+			customers = new CustomerFactory (minservice, maxservice, System.nanoTime ());
+		}
+		
+		scheduleNextArrival (new CustomerArriver ());
+	}
+	
+	//schedules the arrival of the next customer (if there is one left) to be handled by the arriver
+	private void scheduleNextArrival (CustomerArriver arriver)
+	{
+		if (scheduledarrivals == nrcustomers)
+		{
+			return;
+		}
+		
+		scheduledarrivals++;
+		
+		lastarrival += arrivalrand.nextInt (1000 * (this.maxarrival - this.minarrival + 1)) + 1000 * this.minarrival;
+		
+		scheduler.schedule (arriver, Math.max (0, lastarrival - scheduler.currentTimeMillis ()));
 	}
 	
 	private void scheduleReorganizations ()
@@ -310,40 +544,65 @@ public final class Simulator extends Observable
 		{
 			return;
 		}
-
-		reorgtimer.scheduleAtFixedRate (new CustomerReorganizer (),
-										1000 * this.reorganization,
-										1000 * this.reorganization);
+		
+		scheduler.scheduleAtFixedRate (new CustomerReorganizer (),
+										1000L * this.reorganization,
+										1000L * this.reorganization);
 	}
-
-	/** Starts the simulation.
+	
+	/** Starts the simulation. In real time, this method returns immediately and the simulation continues in the
+	* background. In virtual time, this method returns after the simulation is over.
 	*/
 	public void simulate ()
 	{
-		Customer.resetIDs ();
+		scheduler = virtualtime
+					?
+					new VirtualTimeScheduler (System.currentTimeMillis ())
+					:
+					(executor == null ? new RealTimeScheduler () : new RealTimeScheduler (executor));
 		
 		createLogFile ();
 		
+		createJournal ();
+		
 		//the statistics storage place
-		stat = new Statistics (this.nrqueues);
-
+		stat = new Statistics (this.nrqueues, scheduler);
+		
 		//schedule arrivals etc.
 		scheduleCustomerArrivals ();
 		
 		scheduleReorganizations ();
-
+		
 		//create and open all necessary queues
 		for (int i = 0; i < nrqueues; i++)
 		{
 			this.queues[i] = new Queue (this.maxqueuesize);
+		}
+		
+		this.index = new QueueIndex (this.queues);
+		
+		for (int i = 0; i < nrqueues; i++)
+		{
 			this.queues[i].open ();
 			
 			stat.recordEmptyQueue (i, true);
 		}
 		
-		starttime = System.currentTimeMillis ();
+		starttime = scheduler.currentTimeMillis ();
+		
+		_lock.lock ();
 		
-		logAndNotify ("S|S");
+		try
+		{
+			fire (SimulationEvent.Kind.SIMULATION_STARTED, this.nrcustomers, this.nrqueues, this.maxqueuesize);
+		}
+		finally
+		{
+			unlock ();
+		}
+		
+		//in virtual time, this runs the whole simulation
+		scheduler.process ();
 	}
 	
 	/** Returns the amount of time elapsed from the start of simulation.
@@ -352,32 +611,138 @@ public final class Simulator extends Observable
 	*/
 	public int getElapsedTime ()
 	{
-		int rez = (int) ((System.currentTimeMillis () - starttime) / 1000);
+		int rez = (int) ((scheduler.currentTimeMillis () - starttime) / 1000);
 		
 		return rez;
 	}
 	
-	private void logAndNotify (String message)
+	/** Registers a listener that will receive all the events of the simulation as <code>SimulationEvent</code>s.
+	* 
+	* @param listener the listener.
+	* 
+	* @throws NullPointerException if <code>listener</code> is null.
+	*/
+	public void addSimulationListener (SimulationListener listener)
 	{
-		String currenttime = new SimpleDateFormat ("[K:mm:ss]").format (Calendar.getInstance ().getTime ());
-
-		try
+		listeners.add (listener);
+	}
+	
+	/** Removes a listener registered with <code>addSimulationListener</code>. Nothing happens if the listener
+	* is not registered.
+	* 
+	* @param listener the listener.
+	*/
+	public void removeSimulationListener (SimulationListener listener)
+	{
+		listeners.remove (listener);
+	}
+	
+	//fires an event that doesn't change the size of any queue
+	private void fire (SimulationEvent.Kind kind, int customer, int queue, int value)
+	{
+		fire (kind, customer, queue, value, 0, 0);
+	}
+	
+	//delivers an event to the journal, the log, the listeners and (as a String message) to the observers.
+	//must be called while holding the lock, because the event object is reused
+	private void fire (SimulationEvent.Kind kind, int customer, int queue, int value, int size, int targetsize)
+	{
+		SimulationEvent e = event.set (kind, scheduler.currentTimeMillis (), customer, queue, value, size, targetsize);
+		
+		if (journal != null)
+		{
+			journal.append (e);
+		}
+		
+		//the log writer formats the event on its own thread
+		if (log != null)
 		{
-			if (errormessage.length () > 0)
+			log.event (e);
+		}
+		
+		//the subscribers are notified by the dispatcher, outside the lock
+		if (dispatcher == null && (! listeners.isEmpty () || countObservers () > 0))
+		{
+			dispatcher = new EventDispatcher (subscriberpolicy, new SimulationListener ()
+			{
+				public void eventOccurred (SimulationEvent event)
+				{
+					deliver (event);
+				}
+			});
+		}
+		
+		if (dispatcher != null)
+		{
+			dispatcher.publish (e);
+		}
+	}
+	
+	//releases the lock. this is where the simulation waits for the log writer to catch up (or to finish, once
+	//the log is closed) and, with SubscriberPolicy.BLOCK, for the subscribers. never while holding the lock,
+	//so a subscriber can call the simulator without a deadlock
+	private void unlock ()
+	{
+		_lock.unlock ();
+		
+		if (_lock.isHeldByCurrentThread ())
+		{
+			return;
+		}
+		
+		LogWriter l = log;
+		
+		if (l != null)
+		{
+			l.awaitRoom ();
+		}
+		
+		EventDispatcher d = dispatcher;
+		
+		if (d != null)
+		{
+			d.awaitRoom ();
+		}
+	}
+	
+	//notifies the listeners and the observers. called on the thread of the dispatcher
+	private void deliver (SimulationEvent e)
+	{
+		listeners.fire (e);
+		
+		//the String message is only built if someone needs it
+		if (countObservers () > 0)
+		{
+			String message = e.toMessage ();
+			
+			if (message != null)
 			{
-				buff.write (currenttime + " " + errormessage);
-				buff.newLine ();
-			}
-			else
-			{	
-				buff.write (currenttime + " " + MessageParser.parse (message));
-				buff.newLine ();
-
 				setChanged ();
 				notifyObservers (message);
 			}
 		}
-		catch (IOException ioe){}
+	}
+	
+	//writes an error message into the log
+	private void logError (String message)
+	{
+		if (log != null)
+		{
+			log.text (scheduler.currentTimeMillis (), String.valueOf (message));
+		}
+	}
+	
+	/** Returns the number of events that were not delivered to the observers and the listeners because they
+	* couldn't keep up (see <code>SimulatorBuilder.setSubscriberPolicy</code>).
+	* 
+	* @return the number of discarded events.
+	*/
+	public long getNrOfDroppedEvents ()
+	{
+		//no lock: the subscribers may call this while the simulator waits for them
+		EventDispatcher d = dispatcher;
+		
+		return d == null ? 0 : d.getDroppedEvents ();
 	}
 	
 	/** Tells if a queue is open or not.
@@ -392,7 +757,7 @@ public final class Simulator extends Observable
 		{
 			throw new IndexOutOfBoundsException ("queue doesnt exist");
 		}
-
+		
 		return this.queues[nr].isOpen ();
 	}
 	
@@ -401,6 +766,71 @@ public final class Simulator extends Observable
 		return this.nrqueues;
 	}
 	
+	/** Returns the number of customers of the simulation.
+	* 
+	* @return the number of customers.
+	*/
+	public int getNrOfCustomers ()
+	{
+		return this.nrcustomers;
+	}
+	
+	/** Returns the statistics of the simulation. They are complete once the simulation has ended (after the
+	* <code>S|F</code> message).
+	* 
+	* @return the statistics.
+	*/
+	public Statistics getStatistics ()
+	{
+		return this.stat;
+	}
+	
+	/** Returns the maximum number of customers a queue can hold.
+	* 
+	* @return the maximum size of the queues.
+	*/
+	public int getMaxQueueSize ()
+	{
+		return this.maxqueuesize;
+	}
+	
+	//the other parameters of the simulation, used by ParameterSweep
+	int getMinArrival ()
+	{
+		return this.minarrival;
+	}
+	
+	int getMaxArrival ()
+	{
+		return this.maxarrival;
+	}
+	
+	int getMinService ()
+	{
+		return this.minservice;
+	}
+	
+	int getMaxService ()
+	{
+		return this.maxservice;
+	}
+	
+	int getReorganization ()
+	{
+		return this.reorganization;
+	}
+	
+	//tells if the seed was set with the builder
+	boolean isSeeded ()
+	{
+		return this.seeded;
+	}
+	
+	long getSeed ()
+	{
+		return this.seed;
+	}
+	
 	/** Returns the size of the queue at the specified index.
 	* 
 	* @param index the location of the queue.
@@ -433,30 +863,30 @@ public final class Simulator extends Observable
 		{
 			throw new IndexOutOfBoundsException ("parameter out of bounds");
 		}
-
+		
 		//see if queue was previously scheduled to be closed. if yes, cancel that
 		if (closerequests.contains (new Integer (index)))
 		{
 			closerequests.remove (new Integer (index));
 		}
-
+		
 		//if queue is not open, open it
 		if (! queues[index].isOpen ())
 		{
 			_lock.lock ();
-
+			
 			try
 			{
 				queues[index].open ();
 				
 				stat.recordEmptyQueue (index, true);
+				
+				fire (SimulationEvent.Kind.QUEUE_OPENED, 0, index, 0);
 			}
 			finally
 			{
-				_lock.unlock ();
+				unlock ();
 			}
-
-			logAndNotify ("Q|" + index + "|O");
 		}
 	}
 	
@@ -493,14 +923,14 @@ public final class Simulator extends Observable
 				queues[index].close ();
 				
 				stat.recordEmptyQueue (index, false);
+				
+				//notify observers
+				fire (SimulationEvent.Kind.QUEUE_CLOSED, 0, index, 0);
 			}
 			finally
 			{
-				_lock.unlock ();
+				unlock ();
 			}
-			
-			//notify observers
-			logAndNotify ("Q|" + index + "|C");
 		}
 		else
 		{
@@ -509,42 +939,73 @@ public final class Simulator extends Observable
 		}
 	}
 	
+	private void createJournal ()
+	{
+		if (journalname == null)
+		{
+			journal = null;
+			
+			return;
+		}
+		
+		try
+		{
+			journal = new EventJournal (journalname);
+		}
+		catch (IOException e)
+		{
+			journal = null;
+		}
+	}
+	
 	private void createLogFile ()
 	{
-		SimpleDateFormat sdf = new SimpleDateFormat ("dd.MMM.yyyy");
-		String filename = "simulator." + sdf.format (Calendar.getInstance ().getTime ()) + ".log";
+		if (! logenabled)
+		{
+			log = null;
+			
+			return;
+		}
+		
+		String filename = logfilename;
+		
+		if (filename == null)
+		{
+			SimpleDateFormat sdf = new SimpleDateFormat ("dd.MMM.yyyy");
+			filename = "simulator." + sdf.format (Calendar.getInstance ().getTime ()) + ".log";
+		}
 		
 		try
 		{
-			buff = new BufferedWriter (new FileWriter (filename));
-
-			buff.write ("Simulation of Queues Log");
-			buff.newLine ();
-			buff.newLine ();
-			buff.write ("PARAMETERS");
-			buff.newLine ();
-			buff.write ("--------------");
-			buff.newLine ();
-			buff.write ("Number of Queues = " + this.nrqueues);
-			buff.newLine ();
-			buff.write ("Number of Customers = " + this.nrcustomers);
-			buff.newLine ();
-			buff.write ("Maximum Queue Size = " + this.maxqueuesize);
-			buff.newLine ();
-			buff.write ("Customers Arrival Interval = [" + this.minarrival + "," + this.maxarrival + "]");
-			buff.newLine ();
-			buff.write ("Customers Service Need Interval = [" + this.minservice + "," + this.maxservice + "]");
-			buff.newLine ();
-			buff.write ("Customers Reorganization Period = " + (this.reorganization <= 0 ? "disabled" : this.reorganization));
-			buff.newLine ();
-			buff.write ("--------------");
-			buff.newLine ();
-		}
-		catch (IOException e) {}
+			log = new LogWriter (filename, logflushpolicy);
+		}
+		catch (IOException e)
+		{
+			log = null;
+			
+			return;
+		}
+		
+		log.line ("Simulation of Queues Log");
+		log.line ("");
+		log.line ("PARAMETERS");
+		log.line ("--------------");
+		log.line ("Number of Queues = " + this.nrqueues);
+		log.line ("Number of Customers = " + this.nrcustomers);
+		log.line ("Maximum Queue Size = " + this.maxqueuesize);
+		log.line ("Customers Arrival Interval = [" + this.minarrival + "," + this.maxarrival + "]");
+		log.line ("Customers Service Need Interval = [" + this.minservice + "," + this.maxservice + "]");
+		log.line ("Customers Reorganization Period = " + (this.reorganization <= 0 ? "disabled" : this.reorganization));
+		log.line ("--------------");
 	}
-
+	
 	private void writeStatistics ()
 	{
+		if (log == null)
+		{
+			return;
+		}
+		
 		double avgservice = 0, avgwait = 0;
 		double[] qemptytimes = new double[nrqueues];
 		
@@ -552,7 +1013,7 @@ public final class Simulator extends Observable
 		{
 			avgservice = stat.getAverageServiceAmounts (2);
 			avgwait = stat.getAverageWaitingTimes (2);
-
+			
 			for (int i = 0; i < nrqueues; i++)
 			{
 				qemptytimes[i] = stat.getQueueEmptyTime (i, 2);
@@ -560,77 +1021,39 @@ public final class Simulator extends Observable
 		}
 		catch (IllegalArgumentException e)
 		{
-			try
-			{
-				buff.write ("ERROR IN STATISTICS MODULE");
-			}
-			catch (IOException ioe){}
+			log.line ("ERROR IN STATISTICS MODULE");
 		}
-
-		try
+		
+		log.line ("");
+		log.line ("-------------");
+		log.line ("STATISTICS");
+		log.line ("-------------");
+		log.line ("Simulation Running time = " + getElapsedTime () + " seconds");
+		log.line ("Average Service Need of Customers = " + avgservice);
+		log.line ("Average Waiting Time of Customers = " + avgwait);
+		
+		for (int i = 0; i < nrqueues; i++)
 		{
-			buff.newLine ();
-			buff.write ("-------------");
-			buff.newLine ();
-			buff.write ("STATISTICS");
-			buff.newLine ();
-			buff.write ("-------------");
-			buff.newLine ();
-			buff.write ("Simulation Running time = " + getElapsedTime () + " seconds");
-			buff.newLine ();
-			buff.write ("Average Service Need of Customers = " + avgservice);
-			buff.newLine ();
-			buff.write ("Average Waiting Time of Customers = " + avgwait);
-			buff.newLine ();
-			
-			for (int i = 0; i < nrqueues; i++)
-			{
-				buff.write ("Total Empty Time of Queue " + i + " = " + qemptytimes[i]);
-				buff.newLine ();
-			}
+			log.line ("Total Empty Time of Queue " + i + " = " + qemptytimes[i]);
 		}
-		catch (IOException e){}
 	}
-
+	
 	//class whose code is executed each time a customer arrives in the train station
 	//and wants to go to a queue
-	private class CustomerArriver extends TimerTask
+	private class CustomerArriver implements Runnable
 	{
+		//tells if there is no room left in any open queue
 		private boolean isQueuesFull ()
 		{
-			//first, let's check if we have room
-			for (int i = 0; i < nrqueues; i++)
-			{
-				if (queues[i].getSize () < 10)
-				{
-					return false;
-				}
-			}
-			
-			return true;
+			return index.isFull ();
 		}
 		
+		//returns the index of the smallest open queue, -1 if there is none
 		private int emptiestQueue ()
 		{
-			int min_size = Integer.MAX_VALUE;
-			int min_loc = Integer.MAX_VALUE;
-
-			//determine size of smallest opened queue and its index
-			for (int i = 0; i < nrqueues; i++)
-			{
-				if (queues[i].isOpen ())
-				{
-					if (queues[i].getSize () < min_size)
-					{
-						min_size = queues[i].getSize ();
-						min_loc = i;
-					}
-				}
-			}
-			
-			return min_loc;
+			return index.getSmallestQueue ();
 		}
-
+		
 		//entry point of execution
 		public void run ()
 		{
@@ -638,27 +1061,27 @@ public final class Simulator extends Observable
 			
 			try
 			{
+				scheduleNextArrival (this);
+				
 				if (isQueuesFull ())
 				{
-					errormessage = "a new customer arrived, no empty slot was found";
-					logAndNotify ("");
-					errormessage = "";
+					logError ("a new customer arrived, no empty slot was found");
 					
 					//log before stopping, because stop closes the log
-					logAndNotify ("S|E");
+					fire (SimulationEvent.Kind.SIMULATION_ERROR, 0, 0, 0);
 					
 					stop ();
 					
 					return;
 				}
-
+				
 				//the new customer
-				Customer cust = new Customer (minservice, maxservice);
-
+				Customer cust = customers.create ();
+				
 				//determine the smallest queue and add customer to it
 				int new_location = emptiestQueue ();
 				
-				if (new_location == Integer.MAX_VALUE)
+				if (new_location == -1)
 				{
 					throw new IllegalStateException ("no open queue");
 				}
@@ -667,46 +1090,40 @@ public final class Simulator extends Observable
 				{
 					stat.recordEmptyQueue (new_location, false);
 				}
-
+				
 				queues[new_location].addCustomer (cust);
 				
-				logAndNotify ("C|" +
-							Integer.toString (cust.getID ()) +
-							"|A|" +
-							Integer.toString (new_location)
-							);
-
+				fire (SimulationEvent.Kind.CUSTOMER_ARRIVED, cust.getID (), new_location, cust.getAmountOfNeededService (),
+						queues[new_location].getSize (), 0);
+				
 				stat.recordArrivingCustomer (cust);
-
+				
 				//if the customer is the first at the queue, schedule his serving
 				if (queues[new_location].getSize () == 1)
 				{
-					servtimer.schedule(new CustomerServer (new_location),
-										new Date (System.currentTimeMillis () + 1000 * cust.getAmountOfNeededService ()));
+					scheduler.schedule (new CustomerServer (new_location), 1000L * cust.getAmountOfNeededService ());
 				}
 				
 				if (isQueuesFull ())
 				{
-					logAndNotify ("Q|F");
+					fire (SimulationEvent.Kind.QUEUES_FULL, 0, 0, 0);
 				}
 			}
 			catch (Exception e)
 			{
-				errormessage = e.getMessage ();
-				logAndNotify ("");
-				errormessage = "";
-				logAndNotify ("S|E");
+				logError (e.getMessage ());
+				fire (SimulationEvent.Kind.SIMULATION_ERROR, 0, 0, 0);
 				stop ();
 			}
 			finally
 			{
-				_lock.unlock ();
+				unlock ();
 			}
 		}
 	}
-
+	
 	//class whose code is executed every time a customer gets served and leaves the queue
-	private class CustomerServer extends TimerTask
+	private class CustomerServer implements Runnable
 	{
 		private int whichqueue;
 		
@@ -726,26 +1143,22 @@ public final class Simulator extends Observable
 				{
 					throw new IllegalStateException ("no customer at queue " + Integer.toString (this.whichqueue));
 				}
-
+				
 				Customer cust = queues[this.whichqueue].getCustomer (0);
-
+				
 				stat.recordLeavingCustomer (cust);
 				queues[this.whichqueue].removeFirstCustomer ();
-
-				logAndNotify ("C|" +
-								Integer.toString (cust.getID ()) +
-								"|L|" +
-								Integer.toString (this.whichqueue)
-								);
-
+				
+				fire (SimulationEvent.Kind.CUSTOMER_LEFT, cust.getID (), this.whichqueue, cust.getAmountOfNeededService (),
+						queues[this.whichqueue].getSize (), 0);
+				
 				//if after the customer, there are more customers at the queue,
 				//schedule the next customer to be served
 				if (queues[this.whichqueue].getSize () > 0)
 				{
 					cust = queues[this.whichqueue].getCustomer (0);
-
-					servtimer.schedule (new CustomerServer (this.whichqueue),
-										new Date (System.currentTimeMillis () + 1000 * cust.getAmountOfNeededService ()));
+					
+					scheduler.schedule (new CustomerServer (this.whichqueue), 1000L * cust.getAmountOfNeededService ());
 				}
 				
 				//if the queue is left empty, record it
@@ -758,7 +1171,7 @@ public final class Simulator extends Observable
 						
 						stat.recordEmptyQueue (whichqueue, false);
 						
-						logAndNotify ("Q|" + this.whichqueue + "|C");
+						fire (SimulationEvent.Kind.QUEUE_CLOSED, 0, this.whichqueue, 0);
 					}
 					else
 					{
@@ -778,7 +1191,7 @@ public final class Simulator extends Observable
 						stat.recordEmptyQueue (i, false);
 					}
 					
-					logAndNotify ("S|F");
+					fire (SimulationEvent.Kind.SIMULATION_FINISHED, 0, 0, 0);
 					
 					writeStatistics ();
 					
@@ -787,78 +1200,24 @@ public final class Simulator extends Observable
 			}
 			catch (Exception e)
 			{
-				errormessage = e.getMessage ();
-				logAndNotify ("");
-				errormessage = "";
-				logAndNotify ("S|E");
+				logError (e.getMessage ());
+				fire (SimulationEvent.Kind.SIMULATION_ERROR, 0, 0, 0);
 				stop ();
 			}
 			finally
 			{
-				_lock.unlock ();
+				unlock ();
 			}
 		}
 	}
 	
 	//class whose code is executed when a reorganization is scheduled
 	//will move customers from big queues to small queues
-	private class CustomerReorganizer extends TimerTask
+	private class CustomerReorganizer implements Runnable
 	{
-		//first is size, second is index
-		private int[] getMax ()
-		{	
-			int[] rez = new int[2];
-			rez[0] = rez[1] = -1;
-			
-			for (int i = 0; i < nrqueues; i++)
-			{
-				if (queues[i].isOpen ())
-				{
-					if (queues[i].getSize () > rez[0])
-					{
-						rez[0] = queues[i].getSize ();
-						rez[1] = i;
-					}
-				}
-			}
-			
-			return rez;
-		}
-		
-		//first is size, second is index;
-		private int[] getMin ()
-		{	
-			int[] rez = new int[2];
-			rez[0] = rez[1] = maxqueuesize + 1;
-			
-			for (int i = 0; i < nrqueues; i++)
-			{
-				if (queues[i].isOpen ())
-				{
-					if (queues[i].getSize () < rez[0])
-					{
-						rez[0] = queues[i].getSize ();
-						rez[1] = i;
-					}
-				}
-			}
-			
-			return rez;
-		}
-		
 		private int getNrOfOpenedQueues ()
 		{
-			int rez = 0;
-			
-			for (int i = 0; i < nrqueues; i++)
-			{
-				if (queues[i].isOpen ())
-				{
-					rez++;
-				}
-			}
-			
-			return rez;
+			return index.getNrOfOpenQueues ();
 		}
 		
 		public void run ()
@@ -874,85 +1233,96 @@ public final class Simulator extends Observable
 				
 				boolean moved = false;
 				
-				int[] min = getMin ();
-				int[] max = getMax ();
+				int max = index.getLargestQueue ();
+				int min = index.getSmallestQueue ();
 				
-				while (max[0] - min[0] > 2)
+				while (queues[max].getSize () - queues[min].getSize () > 2)
 				{
-					//get the last customer in the biggest queue
-					Customer c = queues[max[1]].getCustomer (max[0] - 1);
+					int minsize = queues[min].getSize ();
 					
-					//remove the customer
-					queues[max[1]].removeLastCustomer ();
+					//move enough customers from the end of the biggest queue to balance it with
+					//the smallest one, all in one transfer
+					int moving = (queues[max].getSize () - minsize) / 2;
 					
-					//move him to the smallest queue
-					queues[min[1]].addCustomer (c);
+					queues[max].drainLast (moving, queues[min]);
 					
-					if (queues[min[1]].getSize () == 1)
-					{
-						stat.recordEmptyQueue (min[1], false);
-					}
+					fire (SimulationEvent.Kind.CUSTOMERS_MOVED, moving, max, min, queues[max].getSize (), queues[min].getSize ());
 					
-					//if the queue was empty, adding a new customer to it means also begginning
-					//to serve that customer
-					if (queues[min[1]].getSize () == 1)
+					//if the queue was empty, adding new customers to it means also begginning
+					//to serve the first of them
+					if (minsize == 0)
 					{
-						servtimer.schedule (new CustomerServer (min[1]),
-											new Date (System.currentTimeMillis () + 1000 * c.getAmountOfNeededService ()));
+						stat.recordEmptyQueue (min, false);
+						
+						Customer c = queues[min].getCustomer (0);
+						
+						scheduler.schedule (new CustomerServer (min), 1000L * c.getAmountOfNeededService ());
 					}
 					
 					moved = true;
 					
-					//recalculate and repeat
-					min = getMin ();
-					max = getMax ();
+					//the index already knows the new sizes, so the next pair is found right away
+					max = index.getLargestQueue ();
+					min = index.getSmallestQueue ();
 				}
 				
 				if (moved)
 				{
-					logAndNotify ("Q|R");
+					fire (SimulationEvent.Kind.CUSTOMERS_REORGANIZED, 0, 0, 0);
 				}
 			}
 			catch (Exception e)
 			{
-				errormessage = e.getMessage ();
-				logAndNotify ("");
-				errormessage = "";
-				logAndNotify ("S|E");
+				logError (e.getMessage ());
+				fire (SimulationEvent.Kind.SIMULATION_ERROR, 0, 0, 0);
 				stop ();
 			}
 			finally
 			{
-				_lock.unlock ();
+				unlock ();
 			}
 		}
 	}
-
+	
 	/** Stops the simulation.
 	*/
 	public void stopSimulation ()
 	{
-		logAndNotify ("S|X");
-
-		stop ();
+		_lock.lock ();
+		
+		try
+		{
+			fire (SimulationEvent.Kind.SIMULATION_STOPPED, 0, 0, 0);
+			
+			stop ();
+		}
+		finally
+		{
+			unlock ();
+		}
 	}
 	
 	//will close the log and cancel everything... it's called stop... doooooh
 	private void stop ()
 	{
-		try
+		//the writer finishes what's left of the log, unlock waits for it
+		if (log != null)
 		{
-			buff.close ();
+			log.close ();
+		}
+		
+		if (journal != null)
+		{
+			journal.close ();
+		}
+		
+		//the events already published are still delivered
+		if (dispatcher != null)
+		{
+			dispatcher.close ();
 		}
-		catch (IOException e) {}
-
-		arrtimer.cancel ();
-		servtimer.cancel ();
-		reorgtimer.cancel ();
 		
-		arrtimer.purge ();
-		servtimer.purge ();
-		reorgtimer.purge ();
+		scheduler.cancel ();
 		
 		for (int i = 0; i < nrqueues; i++)
 		{
@@ -2,33 +2,44 @@ package simulation;
 
 import java.io.Serializable;
 import java.text.DecimalFormat;
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
 import java.util.concurrent.locks.ReentrantLock;
 
 /** This class is used to store statistics about the results of the simulation. This class is thread-safe.
 * Multiple threads can call methods for recording or retrieving results without any worry about external
 * synchronization.
 * 
+* The waiting times and the service amounts are not stored individually. Only running aggregates (count, sum,
+* mean, variance, minimum and maximum) are kept, so the memory used doesn't depend on the number of
+* <code>Customer</code>s and all the results can be read in constant time, even during the simulation.
+* Percentiles are computed from log-linear histograms, which also have a fixed size.
+* 
 * @author Murzea Radu
 * 
-* @version 1.2
+* @version 1.3
 */
 public final class Statistics implements Serializable
 {
-	//stores the waiting time of the customers
-	private ArrayList<Long> waittimes;
+	//aggregates the waiting times of the customers (seconds)
+	private RunningAggregate waittimes;
 
-	//id useful for serializable interface
-	private static final long serialVersionUID = 3787936803099968485L;
+	//id useful for serializable interface. changed in 1.3, the lists of times were replaced by aggregates
+	private static final long serialVersionUID = 7463532030458445054L;
 	
-	//temporarily stores customer records.
+	//temporarily stores the arrival times of the customers, by ID.
 	//added when the customer is recorded to arrive
 	//removed when a customer leaves the queue
-	private ArrayList<CustomerRecord> passingcustomers;
+	private ArrivalTable passingcustomers;
 
-	//stores the service amounts needed by the customers
-	private ArrayList<Integer> servicetimes;
+	//aggregates the service amounts needed by the customers (seconds)
+	private RunningAggregate servicetimes;
+	
+	//distribution of the waiting times (milliseconds)
+	private LogLinearHistogram waithistogram;
+	
+	//distribution of the service amounts (seconds)
+	private LogLinearHistogram servicehistogram;
 	
 	//holds queue records, more specifically how much time the queues stayed open and empty
 	private QueueRecord[] qrecords;
@@ -39,16 +50,35 @@ public final class Statistics implements Serializable
 	//lock for queue related methods
 	private transient ReentrantLock lock_q = new ReentrantLock ();
 	
+	//the values that can be read from an aggregate
+	private static final int MEAN = 0;
+	private static final int VARIANCE = 1;
+	private static final int MIN = 2;
+	private static final int MAX = 3;
+	
+	//the source of the time for all recordings
+	private transient Clock clock;
+	
 	/** Creates a <code>Statistics</code> object.
 	*
 	* @param nrqueues specifies for how many <code>Queue</code>s the statistics should be recorded.
 	*/
     public Statistics (int nrqueues)
     {
+		this (nrqueues, Clock.SYSTEM);
+	}
+	
+	//creates a statistics object that measures time with the specified clock
+	Statistics (int nrqueues, Clock clock)
+	{
+		this.clock = clock;
+		
 		//initialize fields
-		waittimes = new ArrayList<Long> ();
-		servicetimes = new ArrayList<Integer> ();
-		passingcustomers = new ArrayList<CustomerRecord> ();
+		waittimes = new RunningAggregate ();
+		servicetimes = new RunningAggregate ();
+		waithistogram = new LogLinearHistogram ();
+		servicehistogram = new LogLinearHistogram ();
+		passingcustomers = new ArrivalTable ();
 		qrecords = new QueueRecord[nrqueues];
 		
 		//queue records must be created
@@ -68,10 +98,20 @@ public final class Statistics implements Serializable
 	*/
 	public int getNrOfProcessedCustomers ()
 	{
-		return waittimes.size ();
+		lock_c.lock ();
+		
+		try
+		{
+			return (int) waittimes.getCount ();
+		}
+		finally
+		{
+			lock_c.unlock ();
+		}
 	}
 
-	/** Records a <code>Customer</code> that arrives at a <code>Queue</code>.
+	/** Records a <code>Customer</code> that arrives at a <code>Queue</code>. Runs in constant time.
+	* <code>Customer</code>s are identified by their ID.
 	* 
 	* @param c the <code>Customer</code>.
 	* 
@@ -89,25 +129,15 @@ public final class Statistics implements Serializable
 			throw new NullPointerException ("expected Customer, null provided");
 		}
 		
-		//acquire lock because of the iterator below
 		lock_c.lock ();
 		
 		try
 		{
 			//if the customer was already recorded to arrive.... well, sorry.
-			for (Iterator<CustomerRecord> it = passingcustomers.iterator (); it.hasNext ();)
+			if (! passingcustomers.put (c.getID (), clock.currentTimeMillis ()))
 			{
-				if (it.next ().getCustomer ().equals (c))
-				{
-					throw new IllegalArgumentException ("customer already recorded as arrived");
-				}
+				throw new IllegalArgumentException ("customer already recorded as arrived");
 			}
-
-			//create a record for the customer
-			CustomerRecord cr = new CustomerRecord (c);
-		
-			//add customer record to temporary collection
-			passingcustomers.add (cr);
 		}
 		finally
 		{
@@ -115,7 +145,8 @@ public final class Statistics implements Serializable
 		}
 	}
 	
-	/** Records a <code>Customer</code> that was served and left the <code>Queue</code>.
+	/** Records a <code>Customer</code> that was served and left the <code>Queue</code>. Runs in constant time.
+	* <code>Customer</code>s are identified by their ID.
 	* 
 	* @param c the <code>Customer</code>.
 	* 
@@ -133,40 +164,28 @@ public final class Statistics implements Serializable
 			throw new NullPointerException ("expected Customer, null provided");
 		}
 		
-		//since the code below uses an iterator, a lock should be first acquired.
 		lock_c.lock ();
 
-		boolean found = false;
+		long arrivaltime;
 
 		try
 		{
-			//get all the customers that were recorded to arrive but not to leave
-			for (Iterator<CustomerRecord> it = passingcustomers.iterator (); it.hasNext ();)
+			//the customer is removed from the temporary collection, we don't need him anymore
+			arrivaltime = passingcustomers.remove (c.getID ());
+			
+			//if the customer is not in the collection, then it means the customer was not recorded to arrive
+			if (arrivaltime != ArrivalTable.NOT_FOUND)
 			{
-				CustomerRecord cr = it.next ();
-
-				//if the customer is in the collection,
-				//then it means the customer was recorded to arrive
-				if (! cr.getCustomer ().equals (c))
-				{
-					continue;
-				}
-				
 				//record the waiting time of the customer
 				//the service time must be subtracted to reflect the real waiting time
-				waittimes.add (new Long (System.currentTimeMillis () -
-										cr.getArrivalTime ()) -
-										1000 * cr.getCustomer ().getAmountOfNeededService ());
+				long waittime = clock.currentTimeMillis () - arrivaltime - 1000L * c.getAmountOfNeededService ();
+				
+				waittimes.add (waittime / 1000.0);
+				waithistogram.record (waittime);
 
 				//record the service time
-				servicetimes.add (new Integer (cr.getCustomer ().getAmountOfNeededService ()));
-
-				//everything is done, we don't need this customer anymore
-				passingcustomers.remove (cr);
-
-				found = true;
-
-				break;
+				servicetimes.add (c.getAmountOfNeededService ());
+				servicehistogram.record (c.getAmountOfNeededService ());
 			}
 		}
 		finally
@@ -174,10 +193,7 @@ public final class Statistics implements Serializable
 			lock_c.unlock ();
 		}
 		
-		//if the loop was not terminated by the break, then it means the collection
-		//doesn't contain that particular record. which the means the customer was not
-		//previously recorded.
-		if (! found)
+		if (arrivaltime == ArrivalTable.NOT_FOUND)
 		{
 			throw new IllegalArgumentException ("customer arrival was not recorded");
 		}
@@ -235,42 +251,64 @@ public final class Statistics implements Serializable
 	*/
 	public double getAverageServiceAmounts (int decimalplaces)
 	{
-		if (decimalplaces < 0 || decimalplaces > 3)
-		{
-			throw new IllegalArgumentException ("parameter out of bounds");
-		}
-		
-		double avg = 0;
-
-		lock_c.lock ();
-		
-		try
-		{
-			//add all service times together
-			for (Iterator<Integer> it = servicetimes.iterator (); it.hasNext ();)
-			{
-				Integer x = it.next ();
-				avg += x;
-			}
-		}
-		finally
-		{
-			lock_c.unlock ();
-		}
-		
-		//nr of elements in the collection
-		int nr = servicetimes.size ();
-
-		//calculate the average, but protect against divisions by 0
-		avg = (nr == 0) ? 0 : 1.0 * avg / nr;
-		
-		//format the result as requested
-		DecimalFormat df = new DecimalFormat ();
-		df.setMaximumFractionDigits (decimalplaces);
-		
-		String r = df.format (avg);
-		
-		return Double.parseDouble (r);
+		return getServiceAmountsValue (MEAN, decimalplaces);
+	}
+	
+	/** Returns the variance of the service amounts needed by the <code>Customers</code>.
+	* Only <code>Customer</code>s that were recorded to both arrive and leave are taken into consideration
+	* for this.
+	* 
+	* @param decimalplaces the number of decimal places the result should have. Accepted values are
+	* between 0 and 3 inclusively.
+	* 
+	* @throws IllegalArgumentException if <code>decimalplaces</code> is out of the specified bounds.
+	* 
+	* @return the sample variance of the service amounts, 0 if less than 2 <code>Customer</code>s were
+	* processed. The value is expressed in seconds squared.
+	* 
+	* @since 1.3
+	*/
+	public double getServiceAmountsVariance (int decimalplaces)
+	{
+		return getServiceAmountsValue (VARIANCE, decimalplaces);
+	}
+	
+	/** Returns the smallest service amount needed by a <code>Customer</code>.
+	* Only <code>Customer</code>s that were recorded to both arrive and leave are taken into consideration
+	* for this.
+	* 
+	* @param decimalplaces the number of decimal places the result should have. Accepted values are
+	* between 0 and 3 inclusively.
+	* 
+	* @throws IllegalArgumentException if <code>decimalplaces</code> is out of the specified bounds.
+	* 
+	* @return the smallest service amount, 0 if no <code>Customer</code> was processed. The value is expressed
+	* in seconds.
+	* 
+	* @since 1.3
+	*/
+	public double getMinimumServiceAmount (int decimalplaces)
+	{
+		return getServiceAmountsValue (MIN, decimalplaces);
+	}
+	
+	/** Returns the largest service amount needed by a <code>Customer</code>.
+	* Only <code>Customer</code>s that were recorded to both arrive and leave are taken into consideration
+	* for this.
+	* 
+	* @param decimalplaces the number of decimal places the result should have. Accepted values are
+	* between 0 and 3 inclusively.
+	* 
+	* @throws IllegalArgumentException if <code>decimalplaces</code> is out of the specified bounds.
+	* 
+	* @return the largest service amount, 0 if no <code>Customer</code> was processed. The value is expressed
+	* in seconds.
+	* 
+	* @since 1.3
+	*/
+	public double getMaximumServiceAmount (int decimalplaces)
+	{
+		return getServiceAmountsValue (MAX, decimalplaces);
 	}
 	
 	/** Calculates and returns the average time the <code>Customer</code>s have spent waiting
@@ -288,39 +326,214 @@ public final class Statistics implements Serializable
 	* @since 1.2
 	*/
 	public double getAverageWaitingTimes (int decimalplaces)
+	{
+		return getWaitingTimesValue (MEAN, decimalplaces);
+	}
+	
+	/** Returns the variance of the times the <code>Customer</code>s have spent waiting in <code>Queue</code>.
+	* Only <code>Customers</code> that were recorded to both arrive and leave are taken into consideration
+	* for this.
+	* 
+	* @param decimalplaces the number of decimal places the result should have. Accepted values are
+	* between 0 and 3 inclusively.
+	* 
+	* @throws IllegalArgumentException if <code>decimalplaces</code> is out of the specified bounds.
+	* 
+	* @return the sample variance of the waiting times, 0 if less than 2 <code>Customer</code>s were
+	* processed. The value is expressed in seconds squared.
+	* 
+	* @since 1.3
+	*/
+	public double getWaitingTimesVariance (int decimalplaces)
+	{
+		return getWaitingTimesValue (VARIANCE, decimalplaces);
+	}
+	
+	/** Returns the shortest time a <code>Customer</code> has spent waiting in <code>Queue</code>.
+	* Only <code>Customers</code> that were recorded to both arrive and leave are taken into consideration
+	* for this.
+	* 
+	* @param decimalplaces the number of decimal places the result should have. Accepted values are
+	* between 0 and 3 inclusively.
+	* 
+	* @throws IllegalArgumentException if <code>decimalplaces</code> is out of the specified bounds.
+	* 
+	* @return the shortest waiting time, 0 if no <code>Customer</code> was processed. The value is expressed
+	* in seconds.
+	* 
+	* @since 1.3
+	*/
+	public double getMinimumWaitingTime (int decimalplaces)
+	{
+		return getWaitingTimesValue (MIN, decimalplaces);
+	}
+	
+	/** Returns the longest time a <code>Customer</code> has spent waiting in <code>Queue</code>.
+	* Only <code>Customers</code> that were recorded to both arrive and leave are taken into consideration
+	* for this.
+	* 
+	* @param decimalplaces the number of decimal places the result should have. Accepted values are
+	* between 0 and 3 inclusively.
+	* 
+	* @throws IllegalArgumentException if <code>decimalplaces</code> is out of the specified bounds.
+	* 
+	* @return the longest waiting time, 0 if no <code>Customer</code> was processed. The value is expressed
+	* in seconds.
+	* 
+	* @since 1.3
+	*/
+	public double getMaximumWaitingTime (int decimalplaces)
+	{
+		return getWaitingTimesValue (MAX, decimalplaces);
+	}
+	
+	/** Returns the waiting time below which the specified percentage of the <code>Customer</code>s fall
+	* (for example, 95 gives the 95th percentile). Only <code>Customers</code> that were recorded to both arrive
+	* and leave are taken into consideration for this.
+	* 
+	* The waiting times are kept in a histogram, not individually, so the result is approximate: its relative
+	* error is at most 1/128 (about 0.8%). Waiting times shorter than 0.128 seconds are exact. The 0th and the
+	* 100th percentiles are always exact (they are the shortest and the longest waiting times).
+	* 
+	* @param percentile the percentile. Accepted values are between 0 and 100 inclusively.
+	* 
+	* @throws IllegalArgumentException if <code>percentile</code> is out of the specified bounds.
+	* 
+	* @return the waiting time at the specified percentile, 0 if no <code>Customer</code> was processed.
+	* The value is expressed in seconds, with millisecond precision.
+	* 
+	* @since 1.3
+	*/
+	public double getWaitingTimePercentile (double percentile)
+	{
+		lock_c.lock ();
+		
+		try
+		{
+			return waithistogram.getValueAtPercentile (percentile) / 1000.0;
+		}
+		finally
+		{
+			lock_c.unlock ();
+		}
+	}
+	
+	/** Returns the service amount below which the specified percentage of the <code>Customer</code>s fall
+	* (for example, 95 gives the 95th percentile). Only <code>Customers</code> that were recorded to both arrive
+	* and leave are taken into consideration for this.
+	* 
+	* The service amounts are kept in a histogram, not individually. Service amounts up to 127 seconds are
+	* exact. Above that, the relative error of the result is at most 1/128 (about 0.8%).
+	* 
+	* @param percentile the percentile. Accepted values are between 0 and 100 inclusively.
+	* 
+	* @throws IllegalArgumentException if <code>percentile</code> is out of the specified bounds.
+	* 
+	* @return the service amount at the specified percentile, 0 if no <code>Customer</code> was processed.
+	* The value is expressed in seconds.
+	* 
+	* @since 1.3
+	*/
+	public double getServiceAmountPercentile (double percentile)
+	{
+		lock_c.lock ();
+		
+		try
+		{
+			return servicehistogram.getValueAtPercentile (percentile);
+		}
+		finally
+		{
+			lock_c.unlock ();
+		}
+	}
+	
+	//adds the waiting times recorded by this object to another aggregate (used to pool several simulations)
+	void addWaitingTimesTo (RunningAggregate target)
+	{
+		lock_c.lock ();
+		
+		try
+		{
+			target.merge (waittimes);
+		}
+		finally
+		{
+			lock_c.unlock ();
+		}
+	}
+	
+	//reads one of the values of the waiting times aggregate and formats it
+	private double getWaitingTimesValue (int which, int decimalplaces)
 	{
 		if (decimalplaces < 0 || decimalplaces > 3)
 		{
 			throw new IllegalArgumentException ("parameter out of bounds");
 		}
-
-		double avg = 0;
+		
+		double val;
 
 		lock_c.lock ();
 
 		try
 		{
-			for (Iterator<Long> it = waittimes.iterator (); it.hasNext ();)
-			{
-				Long x = it.next ();
-				avg += x / 1000.0;
-			}
+			val = aggregateValue (waittimes, which);
 		}
 		finally
 		{
 			lock_c.unlock ();
 		}
 		
-		//nr of elements in the collection
-		int nr = waittimes.size ();
+		return format (val, decimalplaces);
+	}
+	
+	//reads one of the values of the service amounts aggregate and formats it
+	private double getServiceAmountsValue (int which, int decimalplaces)
+	{
+		if (decimalplaces < 0 || decimalplaces > 3)
+		{
+			throw new IllegalArgumentException ("parameter out of bounds");
+		}
+		
+		double val;
 
-		//protect against divisions by 0
-		avg = (nr == 0) ? 0 : 1.0 * avg / nr;
+		lock_c.lock ();
+
+		try
+		{
+			val = aggregateValue (servicetimes, which);
+		}
+		finally
+		{
+			lock_c.unlock ();
+		}
 		
-		DecimalFormat df = new DecimalFormat ();
+		return format (val, decimalplaces);
+	}
+	
+	private static double aggregateValue (RunningAggregate aggregate, int which)
+	{
+		switch (which)
+		{
+			case MEAN:
+				return aggregate.getMean ();
+			case VARIANCE:
+				return aggregate.getVariance ();
+			case MIN:
+				return aggregate.getMin ();
+			default:
+				return aggregate.getMax ();
+		}
+	}
+	
+	//rounds the value to the specified number of decimal places.
+	//no grouping and a fixed decimal separator, so the result can always be parsed back
+	private static double format (double val, int decimalplaces)
+	{
+		DecimalFormat df = new DecimalFormat ("0", new DecimalFormatSymbols (Locale.US));
 		df.setMaximumFractionDigits (decimalplaces);
 		
-		String r = df.format (avg);
+		String r = df.format (val);
 		
 		return Double.parseDouble (r);
 	}
@@ -373,37 +586,9 @@ public final class Statistics implements Serializable
 			lock_q.unlock ();
 		}
 		
-		DecimalFormat df = new DecimalFormat ();
-		df.setMaximumFractionDigits (decimalplaces);
-		
-		String r = df.format (val);
-		
-		return Double.parseDouble (r);
+		return format (val, decimalplaces);
 	}
 
-	//class used to store arrival times for each customer
-	private class CustomerRecord
-	{
-		private Customer c;
-		private long arrivaltime;
-		
-		CustomerRecord (Customer c)
-		{
-			this.c = c;
-			this.arrivaltime = System.currentTimeMillis ();
-		}
-		
-		Customer getCustomer ()
-		{
-			return c;
-		}
-		
-		long getArrivalTime ()
-		{
-			return arrivaltime;
-		}
-	}
-	
 	//class used to store empty times for each queue
 	private class QueueRecord
 	{
@@ -426,7 +611,7 @@ public final class Statistics implements Serializable
 				return;
 			}
 
-			this.emptytimestamp = System.currentTimeMillis ();
+			this.emptytimestamp = clock.currentTimeMillis ();
 			this.empty = true;
 		}
 		
@@ -439,7 +624,7 @@ public final class Statistics implements Serializable
 	
 			this.empty = false;
 			
-			this.emptytime += (System.currentTimeMillis () - this.emptytimestamp);
+			this.emptytime += (clock.currentTimeMillis () - this.emptytimestamp);
 			
 			this.emptytimestamp = 0;
 		}
@@ -0,0 +1,27 @@
+package simulation;
+
+/** Specifies what the <code>Simulator</code> does when its observers and listeners can't keep up with the
+* events. The events are delivered on a separate thread, through a bounded buffer; the policy only matters when
+* that buffer is full.
+* 
+* @author Murzea Radu
+* 
+* @version 1.0
+*/
+public enum SubscriberPolicy
+{
+	/** The simulation waits until there is room in the buffer. No event is lost, but a slow subscriber slows
+	* down the simulation. The simulator waits after releasing its lock, so the subscribers can still call it.
+	*/
+	BLOCK,
+	
+	/** The events that don't fit in the buffer are discarded. The simulation is never slowed down.
+	*/
+	DROP,
+	
+	/** The customer events (arrivals, departures and moves) that don't fit in the buffer are discarded; the
+	* state of the queues read when the next event is delivered includes their effect. All the other events
+	* (the start and the end of the simulation, queues opened, closed etc.) are never lost. This is the default.
+	*/
+	COALESCE
+}
@@ -0,0 +1,125 @@
+package simulation;
+
+import java.util.PriorityQueue;
+
+/** Discrete-event <code>EventScheduler</code>. The scheduled tasks are kept in a future-event list ordered
+* by their execution time. <code>process</code> repeatedly takes the earliest task, advances the
+* simulated clock to its execution time and executes it, so a simulation runs as fast as the CPU allows,
+* independently of the time intervals involved.
+* 
+* Tasks with the same execution time are executed in the order in which they were scheduled.
+* 
+* This class is not thread-safe: tasks must be scheduled either before <code>process</code> is called
+* or by the tasks themselves. Only <code>cancel</code> and <code>currentTimeMillis</code> may be
+* called from other threads.
+* 
+* @version 1.0
+*/
+final class VirtualTimeScheduler implements EventScheduler
+{
+	//the future-event list
+	private final PriorityQueue<Event> events;
+
+	//the simulated clock
+	private volatile long now;
+
+	//used to keep the scheduling order of events with the same time
+	private long sequence;
+
+	private volatile boolean cancelled;
+
+	/** Creates a scheduler whose clock starts at the specified time.
+	* 
+	* @param starttime the initial value of the simulated clock. Expressed in milliseconds.
+	*/
+	VirtualTimeScheduler (long starttime)
+	{
+		this.events = new PriorityQueue<Event> ();
+		this.now = starttime;
+		this.sequence = 0;
+		this.cancelled = false;
+	}
+
+	public long currentTimeMillis ()
+	{
+		return now;
+	}
+
+	public void schedule (Runnable task, long delay)
+	{
+		add (new Event (task, now + delay, 0));
+	}
+
+	public void scheduleAtFixedRate (Runnable task, long delay, long period)
+	{
+		add (new Event (task, now + delay, period));
+	}
+
+	public void process ()
+	{
+		while (! cancelled)
+		{
+			Event e = events.poll ();
+
+			if (e == null)
+			{
+				break;
+			}
+
+			now = e.time;
+
+			e.task.run ();
+
+			//periodic tasks go back into the list
+			if (e.period > 0 && ! cancelled)
+			{
+				e.time += e.period;
+				add (e);
+			}
+		}
+
+		events.clear ();
+	}
+
+	public void cancel ()
+	{
+		cancelled = true;
+	}
+
+	private void add (Event e)
+	{
+		if (cancelled)
+		{
+			return;
+		}
+
+		e.sequence = sequence++;
+		events.add (e);
+	}
+
+	//an entry of the future-event list
+	private static final class Event implements Comparable<Event>
+	{
+		private final Runnable task;
+		private final long period;
+		private long time;
+		private long sequence;
+
+		Event (Runnable task, long time, long period)
+		{
+			this.task = task;
+			this.time = time;
+			this.period = period;
+		}
+
+		public int compareTo (Event e)
+		{
+			if (this.time != e.time)
+			{
+				return (this.time < e.time) ? -1 : 1;
+			}
+
+			return (this.sequence < e.sequence) ? -1 : ((this.sequence == e.sequence) ? 0 : 1);
+		}
+	}
+}